@@ -0,0 +1,475 @@
+package com.fillumina.demo.jhcryptfield.security.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@code GeneratedCodec} for the value type of every
+ * {@code @Encrypted} field so the per-row encoding and decoding don't go
+ * through Jackson databind introspection.
+ * <p>
+ * Properties are the fields with a public getter and setter, written in
+ * declaration order (the binary format relies on it: new fields must be
+ * appended at the end); only strings, primitives and their wrappers are
+ * supported. The {@code id} of an {@code IdSettable} is skipped as it is the id
+ * of the owner entity. Types that cannot be handled are reported as a note and
+ * keep using Jackson databind at runtime.
+ * <p>
+ * It is built as a separate artifact and listed in the compiler
+ * {@code annotationProcessorPaths} of the application, so it runs in the main
+ * compilation and is not part of the application jar. It only depends on the
+ * JDK and refers to the application types by name.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+@SupportedAnnotationTypes(EncryptedCodecProcessor.ENCRYPTED)
+public class EncryptedCodecProcessor extends AbstractProcessor {
+
+    static final String ENCRYPTED = "com.fillumina.demo.jhcryptfield.security.Encrypted";
+
+    private static final String ENCRYPTED_VALUE = "com.fillumina.demo.jhcryptfield.security.EncryptedValue";
+    private static final String GENERATED_CODEC = "com.fillumina.demo.jhcryptfield.security.GeneratedCodec";
+    private static final String BINARY_WRITER = "com.fillumina.demo.jhcryptfield.security.BinaryPayloadWriter";
+    private static final String BINARY_READER = "com.fillumina.demo.jhcryptfield.security.BinaryPayloadReader";
+    private static final String ID_SETTABLE = "com.fillumina.demo.jhcryptfield.security.EncryptionHelper.IdSettable";
+    private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+    private static final String CLASS_SUFFIX = "Codec";
+
+    private final Set<String> processed = new HashSet<>();
+
+    /**
+     * How a property type is written and read.
+     */
+    private enum Kind {
+        STRING(null, "String", "writeString(%s)", "getValueAsString()", "String"),
+        BOOLEAN(TypeKind.BOOLEAN, "boolean", "writeBoolean(%s)", "getBooleanValue()", "Boolean"),
+        SHORT(TypeKind.SHORT, "short", "writeNumber(%s)", "getShortValue()", "Short"),
+        INT(TypeKind.INT, "int", "writeNumber(%s)", "getIntValue()", "Int"),
+        LONG(TypeKind.LONG, "long", "writeNumber(%s)", "getLongValue()", "Long"),
+        FLOAT(TypeKind.FLOAT, "float", "writeNumber(%s)", "getFloatValue()", "Float"),
+        DOUBLE(TypeKind.DOUBLE, "double", "writeNumber(%s)", "getDoubleValue()", "Double");
+
+        final TypeKind typeKind;
+        final String primitive;
+        final String write;
+        final String read;
+        // suffix of the BinaryPayloadWriter and BinaryPayloadReader methods
+        final String binary;
+
+        Kind(TypeKind typeKind, String primitive, String write, String read, String binary) {
+            this.typeKind = typeKind;
+            this.primitive = primitive;
+            this.write = write;
+            this.read = read;
+            this.binary = binary;
+        }
+    }
+
+    private static class Property {
+
+        final String name;
+        final String getter;
+        final String setter;
+        final Kind kind;
+        final boolean boxed;
+
+        Property(String name, String getter, String setter, Kind kind, boolean boxed) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+            this.kind = kind;
+            this.boxed = boxed;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement valueType = getValueType(element);
+                if (valueType == null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@Encrypted field is not an EncryptedValue<T>", element);
+                } else if (processed.add(valueType.getQualifiedName().toString()) && isSourceType(valueType, roundEnv)) {
+                    generate(valueType);
+                }
+            }
+        }
+        return false;
+    }
+
+    private TypeElement getValueType(Element element) {
+        if (element.getKind() != ElementKind.FIELD || element.asType().getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType fieldType = (DeclaredType) element.asType();
+        if (!((TypeElement) fieldType.asElement()).getQualifiedName().contentEquals(ENCRYPTED_VALUE)) {
+            return null;
+        }
+        List<? extends TypeMirror> arguments = fieldType.getTypeArguments();
+        if (arguments.size() != 1 || arguments.get(0).getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) arguments.get(0)).asElement();
+    }
+
+    /**
+     * Codecs can only be generated for the types being compiled, JDK types
+     * such as {@code String} keep using the default codec.
+     */
+    private boolean isSourceType(TypeElement valueType, RoundEnvironment roundEnv) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(valueType).getQualifiedName().toString();
+        if (packageName.startsWith("java.") || packageName.startsWith("javax.")) {
+            return false;
+        }
+        Element outermost = valueType;
+        while (outermost.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+            outermost = outermost.getEnclosingElement();
+        }
+        if (!roundEnv.getRootElements().contains(outermost)) {
+            note(valueType, "not compiled with the processor");
+            return false;
+        }
+        return true;
+    }
+
+    private void generate(TypeElement valueType) {
+        if (!hasPublicNoArgsConstructor(valueType)) {
+            note(valueType, "no public no-args constructor");
+            return;
+        }
+        boolean skipId = isIdSettable(valueType);
+        List<Property> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(valueType.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            String name = field.getSimpleName().toString();
+            if (
+                modifiers.contains(Modifier.STATIC) ||
+                modifiers.contains(Modifier.TRANSIENT) ||
+                hasAnnotation(field, JSON_IGNORE) ||
+                (skipId && "id".equals(name))
+            ) {
+                continue;
+            }
+            Property property = createProperty(valueType, field);
+            if (property == null) {
+                note(valueType, "unsupported property " + name);
+                return;
+            }
+            properties.add(property);
+        }
+        try {
+            write(valueType, properties);
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write codec: " + ex.getMessage(), valueType);
+        }
+    }
+
+    private Property createProperty(TypeElement valueType, VariableElement field) {
+        TypeMirror type = field.asType();
+        Kind kind = null;
+        boolean boxed = false;
+        // compares kinds and elements, the string form of a type includes its type-use annotations (e.g. @NotNull)
+        if (type.getKind().isPrimitive()) {
+            kind = kindOf(type.getKind());
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            TypeElement string = processingEnv.getElementUtils().getTypeElement(String.class.getName());
+            if (processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(type), string.asType())) {
+                kind = Kind.STRING;
+            } else {
+                TypeMirror unboxed = unbox(type);
+                if (unboxed != null) {
+                    kind = kindOf(unboxed.getKind());
+                    boxed = true;
+                }
+            }
+        }
+        if (kind == null) {
+            return null;
+        }
+        String name = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        String getter = "get" + capitalized;
+        if (kind == Kind.BOOLEAN && !boxed && findMethod(valueType, getter, 0) == null) {
+            getter = "is" + capitalized;
+        }
+        String setter = "set" + capitalized;
+        if (findMethod(valueType, getter, 0) == null || findMethod(valueType, setter, 1) == null) {
+            return null;
+        }
+        return new Property(name, getter, setter, kind, boxed);
+    }
+
+    private static Kind kindOf(TypeKind typeKind) {
+        for (Kind kind : Kind.values()) {
+            if (kind.typeKind == typeKind) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    private TypeMirror unbox(TypeMirror type) {
+        try {
+            return processingEnv.getTypeUtils().unboxedType(type);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static ExecutableElement findMethod(TypeElement type, String name, int parameters) {
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (
+                method.getSimpleName().contentEquals(name) &&
+                method.getParameters().size() == parameters &&
+                method.getModifiers().contains(Modifier.PUBLIC) &&
+                !method.getModifiers().contains(Modifier.STATIC)
+            ) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasPublicNoArgsConstructor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getModifiers().contains(Modifier.PUBLIC)) {
+            return false;
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        return constructors.stream().anyMatch(c -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC));
+    }
+
+    private boolean isIdSettable(TypeElement type) {
+        TypeElement idSettable = processingEnv.getElementUtils().getTypeElement(ID_SETTABLE);
+        return idSettable != null && processingEnv.getTypeUtils().isAssignable(type.asType(), idSettable.asType());
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        return element
+            .getAnnotationMirrors()
+            .stream()
+            .anyMatch(a -> ((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation));
+    }
+
+    private void note(TypeElement valueType, String reason) {
+        processingEnv
+            .getMessager()
+            .printMessage(Diagnostic.Kind.NOTE, "Not generating a codec for " + valueType.getQualifiedName() + ": " + reason, valueType);
+    }
+
+    private void write(TypeElement valueType, List<Property> properties) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(valueType).getQualifiedName().toString();
+        String type = valueType.getQualifiedName().toString();
+        String codecName = valueType.getSimpleName() + CLASS_SUFFIX;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(packageName + "." + codecName, valueType);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("import com.fasterxml.jackson.core.JsonGenerator;");
+            out.println("import com.fasterxml.jackson.core.JsonParseException;");
+            out.println("import com.fasterxml.jackson.core.JsonParser;");
+            out.println("import com.fasterxml.jackson.core.JsonToken;");
+            out.println("import com.fasterxml.jackson.core.io.SerializedString;");
+            out.println("import java.io.IOException;");
+            out.println();
+            out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            out.println("public final class " + codecName + " implements " + GENERATED_CODEC + "<" + type + "> {");
+            out.println();
+            for (Property p : properties) {
+                out.println("    private static final SerializedString " + constant(p) + " = new SerializedString(\"" + p.name + "\");");
+            }
+            out.println();
+            out.println("    @Override");
+            out.println("    public void write(" + type + " value, JsonGenerator generator) throws IOException {");
+            out.println("        generator.writeStartObject();");
+            for (Property p : properties) {
+                out.println("        generator.writeFieldName(" + constant(p) + ");");
+                out.println(writeStatement(p));
+            }
+            out.println("        generator.writeEndObject();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + type + " read(JsonParser parser) throws IOException {");
+            out.println("        JsonToken token = parser.hasCurrentToken() ? parser.currentToken() : parser.nextToken();");
+            out.println("        if (token != JsonToken.START_OBJECT) {");
+            out.println("            throw new JsonParseException(parser, \"Expected an object\");");
+            out.println("        }");
+            out.println("        " + type + " value = new " + type + "();");
+            out.println("        String name;");
+            out.println("        while ((name = parser.nextFieldName()) != null) {");
+            out.println("            token = parser.nextToken();");
+            out.println("            switch (name) {");
+            for (Property p : properties) {
+                out.println("                case \"" + p.name + "\":");
+                out.println(readStatement(p));
+                out.println("                    break;");
+            }
+            out.println("                default:");
+            out.println("                    parser.skipChildren();");
+            out.println("            }");
+            out.println("        }");
+            out.println("        return value;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void writeBinary(" + type + " value, " + BINARY_WRITER + " out) {");
+            out.println("        out.writeFieldCount(" + properties.size() + ");");
+            for (Property p : properties) {
+                out.println(writeBinaryStatement(p));
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + type + " readBinary(" + BINARY_READER + " in) throws IOException {");
+            out.println("        int fields = in.readFieldCount();");
+            out.println("        " + type + " value = new " + type + "();");
+            for (int i = 0; i < properties.size(); i++) {
+                out.println("        if (fields > " + i + ") {");
+                out.println(readBinaryStatement(properties.get(i)));
+                out.println("        }");
+            }
+            out.println("        return value;");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private static String constant(Property p) {
+        return p.name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase() + "_NAME";
+    }
+
+    private static String writeStatement(Property p) {
+        String getter = "value." + p.getter + "()";
+        if (p.kind == Kind.STRING) {
+            // writeString(null) writes null
+            return "        generator." + String.format(p.kind.write, getter) + ";";
+        }
+        if (!p.boxed) {
+            return "        generator." + String.format(p.kind.write, getter) + ";";
+        }
+        String local = p.name + "Value";
+        return (
+            "        " +
+            box(p.kind) +
+            " " +
+            local +
+            " = " +
+            getter +
+            ";\n" +
+            "        if (" +
+            local +
+            " == null) {\n" +
+            "            generator.writeNull();\n" +
+            "        } else {\n" +
+            "            generator." +
+            String.format(p.kind.write, local + "." + p.kind.primitive + "Value()") +
+            ";\n" +
+            "        }"
+        );
+    }
+
+    private static String readStatement(Property p) {
+        String read = "value." + p.setter + "(parser." + p.kind.read + ");";
+        if (p.kind == Kind.STRING) {
+            // getValueAsString() returns null for a JSON null
+            return "                    " + read;
+        }
+        if (p.boxed) {
+            return (
+                "                    value." +
+                p.setter +
+                "(token == JsonToken.VALUE_NULL ? null : " +
+                box(p.kind) +
+                ".valueOf(parser." +
+                p.kind.read +
+                "));"
+            );
+        }
+        return "                    if (token != JsonToken.VALUE_NULL) {\n                        " + read + "\n                    }";
+    }
+
+    private static String writeBinaryStatement(Property p) {
+        String getter = "value." + p.getter + "()";
+        if (!p.boxed) {
+            return "        out.write" + p.kind.binary + "(" + getter + ");";
+        }
+        String local = p.name + "Value";
+        return (
+            "        " +
+            box(p.kind) +
+            " " +
+            local +
+            " = " +
+            getter +
+            ";\n" +
+            "        if (" +
+            local +
+            " == null) {\n" +
+            "            out.writeNull();\n" +
+            "        } else {\n" +
+            "            out.writePresent();\n" +
+            "            out.write" +
+            p.kind.binary +
+            "(" +
+            local +
+            "." +
+            p.kind.primitive +
+            "Value());\n" +
+            "        }"
+        );
+    }
+
+    private static String readBinaryStatement(Property p) {
+        String read = "in.read" + p.kind.binary + "()";
+        if (p.boxed) {
+            return "            value." + p.setter + "(in.readPresent() ? " + box(p.kind) + ".valueOf(" + read + ") : null);";
+        }
+        return "            value." + p.setter + "(" + read + ");";
+    }
+
+    private static String box(Kind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return "Boolean";
+            case SHORT:
+                return "Short";
+            case INT:
+                return "Integer";
+            case LONG:
+                return "Long";
+            case FLOAT:
+                return "Float";
+            case DOUBLE:
+                return "Double";
+            default:
+                return "String";
+        }
+    }
+}
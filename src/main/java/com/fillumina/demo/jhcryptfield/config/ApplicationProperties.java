@@ -1,7 +1,8 @@
 package com.fillumina.demo.jhcryptfield.config;
 
 import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.EncryptionSecret;
-import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -13,19 +14,22 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
-    public static EncryptionSecret FIELD_ENCRYPTION_SECRET;
-
     private final FieldEncryptionSecret customerAddressSecret = new FieldEncryptionSecret();
 
-    @PostConstruct
-    public void initStaticInstance() {
-        FIELD_ENCRYPTION_SECRET = customerAddressSecret;
-    }
+    private final FieldEncryption fieldEncryption = new FieldEncryption();
 
+    /**
+     * The original secret, it's the key with id 0 and the only one able to
+     * decrypt the values encrypted before the key id was stored along them.
+     */
     public FieldEncryptionSecret getFieldEncryptionSecret() {
         return customerAddressSecret;
     }
 
+    public FieldEncryption getFieldEncryption() {
+        return fieldEncryption;
+    }
+
     public static class FieldEncryptionSecret implements EncryptionSecret {
 
         private String password;
@@ -49,4 +53,211 @@ public class ApplicationProperties {
             this.salt = salt;
         }
     }
+
+    public static class FieldEncryption {
+
+        private int activeKey = 0;
+
+        private final Map<Integer, FieldEncryptionSecret> keys = new HashMap<>();
+
+        private final Rotation rotation = new Rotation();
+
+        private final Batch batch = new Batch();
+
+        private final BlindIndex blindIndex = new BlindIndex();
+
+        private final DecryptedCache decryptedCache = new DecryptedCache();
+
+        /**
+         * The id of the key used to encrypt new values.
+         */
+        public int getActiveKey() {
+            return activeKey;
+        }
+
+        public void setActiveKey(int activeKey) {
+            this.activeKey = activeKey;
+        }
+
+        /**
+         * Additional keys by id (1-255).
+         */
+        public Map<Integer, FieldEncryptionSecret> getKeys() {
+            return keys;
+        }
+
+        public Rotation getRotation() {
+            return rotation;
+        }
+
+        public Batch getBatch() {
+            return batch;
+        }
+
+        public BlindIndex getBlindIndex() {
+            return blindIndex;
+        }
+
+        public DecryptedCache getDecryptedCache() {
+            return decryptedCache;
+        }
+    }
+
+    public static class Rotation {
+
+        private boolean enabled = false;
+        private int batchSize = 100;
+        private long pauseMs = 0;
+
+        /**
+         * Re-encrypts with the active key all the values encrypted with other keys at startup.
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Pause between batches to limit the load on the database.
+         */
+        public long getPauseMs() {
+            return pauseMs;
+        }
+
+        public void setPauseMs(long pauseMs) {
+            this.pauseMs = pauseMs;
+        }
+    }
+
+    public static class Batch {
+
+        private int threshold = 64;
+        private int parallelism = 0;
+
+        /**
+         * Batches smaller than this are decrypted on the calling thread.
+         */
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * Threads decrypting the large batches, 0 for the number of processors.
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * The secret of the blind indexes must be different from the encryption
+     * keys, it cannot be rotated without rebuilding all the indexes.
+     */
+    public static class BlindIndex extends FieldEncryptionSecret {
+
+        private boolean enabled = false;
+        private int batchSize = 100;
+        private int postcodePrefixLength = 0;
+
+        /**
+         * Maintains the blind indexes of the encrypted fields, the missing ones are built at startup.
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Rows indexed per transaction when the missing indexes are built.
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Length of the postcode prefix indexed for range queries, {@code 0}
+         * disables the prefix index. Shorter prefixes leak less (only the
+         * coarse area is revealed) but make range queries decrypt more rows.
+         */
+        public int getPostcodePrefixLength() {
+            return postcodePrefixLength;
+        }
+
+        public void setPostcodePrefixLength(int postcodePrefixLength) {
+            this.postcodePrefixLength = postcodePrefixLength;
+        }
+    }
+
+    public static class DecryptedCache {
+
+        private boolean enabled = false;
+        private int maxEntries = 10000;
+        private long timeToLiveSeconds = 300;
+        private boolean encrypted = false;
+
+        /**
+         * Keeps the plain texts of the recently decrypted values so that they are decrypted once per time to live.
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        /**
+         * Keeps the cached plain texts encrypted with an ephemeral in-memory key,
+         * so that a heap dump doesn't reveal them.
+         */
+        public boolean isEncrypted() {
+            return encrypted;
+        }
+
+        public void setEncrypted(boolean encrypted) {
+            this.encrypted = encrypted;
+        }
+    }
 }
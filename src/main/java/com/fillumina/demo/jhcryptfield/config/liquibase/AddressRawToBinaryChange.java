@@ -0,0 +1,146 @@
+package com.fillumina.demo.jhcryptfield.config.liquibase;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies the hexadecimal encoded {@code customer.address_raw} text column into
+ * the binary {@code customer.address_bin} column.
+ * <p>
+ * Rows are converted in id order and each batch is committed on its own so
+ * large tables don't need a single huge transaction. Only rows not yet
+ * converted are selected so an interrupted migration can be resumed.
+ * <p>
+ * A value that is not valid hexadecimal stops the migration: the row must be
+ * fixed (or its address set to {@code NULL}) before running it again, the text
+ * column is only dropped by a later changeset. With {@code clearInvalid}, meant
+ * for the placeholder addresses of the {@code faker} sample data, such values are
+ * converted to {@code NULL} instead.
+ */
+public class AddressRawToBinaryChange implements CustomTaskChange {
+
+    private static final String SELECT_SQL =
+        "SELECT id, address_raw FROM customer WHERE id > ? AND address_raw IS NOT NULL AND address_bin IS NULL ORDER BY id";
+
+    private static final String UPDATE_SQL = "UPDATE customer SET address_bin = ? WHERE id = ?";
+
+    private static final String CLEAR_SQL = "UPDATE customer SET address_raw = NULL WHERE id = ?";
+
+    private final Logger log = LoggerFactory.getLogger(AddressRawToBinaryChange.class);
+
+    private Integer batchSize = 500;
+    private Boolean clearInvalid = false;
+    private long migrated;
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Boolean getClearInvalid() {
+        return clearInvalid;
+    }
+
+    public void setClearInvalid(Boolean clearInvalid) {
+        this.clearInvalid = clearInvalid;
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        try (
+            PreparedStatement select = connection.prepareStatement(SELECT_SQL);
+            PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+            PreparedStatement clear = connection.prepareStatement(CLEAR_SQL)
+        ) {
+            select.setMaxRows(batchSize);
+            long lastId = Long.MIN_VALUE;
+            int count;
+            do {
+                count = 0;
+                int cleared = 0;
+                select.setLong(1, lastId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        byte[] address = decode(lastId, rs.getString(2));
+                        if (address == null) {
+                            // nothing left to convert, so the text column can be dropped
+                            clear.setLong(1, lastId);
+                            clear.addBatch();
+                            cleared++;
+                        } else {
+                            update.setBytes(1, address);
+                            update.setLong(2, lastId);
+                            update.addBatch();
+                        }
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    update.executeBatch();
+                    if (cleared > 0) {
+                        clear.executeBatch();
+                    }
+                    if (!connection.getAutoCommit()) {
+                        connection.commit();
+                    }
+                    migrated += count;
+                    log.debug("Migrated {} customer addresses to binary", migrated);
+                }
+            } while (count == batchSize);
+        } catch (SQLException | DatabaseException ex) {
+            throw new CustomChangeException("Cannot migrate customer.address_raw to binary", ex);
+        }
+    }
+
+    private byte[] decode(long id, String hex) throws CustomChangeException {
+        try {
+            return EncryptionUtils.decodeHexString(hex.trim());
+        } catch (IllegalArgumentException ex) {
+            if (Boolean.TRUE.equals(clearInvalid)) {
+                log.warn("Invalid hexadecimal address_raw for customer {}, cleared", id);
+                return null;
+            }
+            throw new CustomChangeException("Invalid hexadecimal customer.address_raw for customer " + id, ex);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Migrated " + migrated + " customer addresses to binary";
+    }
+
+    @Override
+    public void setUp() {
+        // nothing to set up
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+        // no files needed
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (batchSize == null || batchSize < 1) {
+            errors.addError("batchSize must be positive");
+        }
+        return errors;
+    }
+}
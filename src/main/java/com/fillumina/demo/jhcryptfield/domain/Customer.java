@@ -1,11 +1,18 @@
 package com.fillumina.demo.jhcryptfield.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fillumina.demo.jhcryptfield.security.DeterministicCipherEngine;
+import com.fillumina.demo.jhcryptfield.security.Encrypted;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
 import com.fillumina.demo.jhcryptfield.security.EncryptionHelper;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import javax.persistence.*;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
-import org.hibernate.annotations.Type;
+import org.hibernate.annotations.DynamicUpdate;
 
 /**
  * A Customer.
@@ -13,11 +20,14 @@ import org.hibernate.annotations.Type;
 @Entity
 @Table(name = "customer")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@DynamicUpdate
 public class Customer implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private static final EncryptionHelper<CustomerAddress> ENCRYPTION_HELPER = new EncryptionHelper<>(CustomerAddress.class);
+    private static final EncryptionHelper<String> EMAIL_ENCRYPTION = EncryptionHelper.forField(Customer.class, "email");
+
+    private static final EncryptionHelper<String> TELEPHONE_ENCRYPTION = EncryptionHelper.forField(Customer.class, "telephone");
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
@@ -31,26 +41,43 @@ public class Customer implements Serializable {
     @Column(name = "last_name")
     private String lastName;
 
+    /**
+     * Encrypted deterministically so customers can be found by email.
+     */
+    @Encrypted(engine = DeterministicCipherEngine.class)
     @Column(name = "email")
-    private String email;
+    private EncryptedValue<String> email;
 
+    @Encrypted(engine = DeterministicCipherEngine.class)
     @Column(name = "telephone")
-    private String telephone;
-
-    @Lob
-    @Type(type = "org.hibernate.type.TextType")
+    private EncryptedValue<String> telephone;
+
+    /**
+     * Saved before email and telephone were encrypted, until they are
+     * encrypted by {@code CustomerContactEncryptionService}.
+     */
+    @Column(name = "email_plain")
+    private String plainEmail;
+
+    @Column(name = "telephone_plain")
+    private String plainTelephone;
+
+    /**
+     * Stored in the {@code address_raw} column, exposed to the API as a
+     * lowercase hexadecimal string by {@link #getAddressRaw()}.
+     */
+    @Encrypted
     @Column(name = "address_raw")
-    private String addressRaw;
+    private EncryptedValue<CustomerAddress> address;
 
-    private transient CustomerAddress address;
+    /**
+     * Maintained along with the address, to search it without decrypting.
+     */
+    @Embedded
+    private CustomerAddressIndex addressIndex;
 
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
-    @PostLoad
-    public void initAddress() {
-        getAddress();
-    }
-
     public Long getId() {
         return this.id;
     }
@@ -91,7 +118,7 @@ public class Customer implements Serializable {
     }
 
     public String getEmail() {
-        return this.email;
+        return this.email == null ? this.plainEmail : this.email.get();
     }
 
     public Customer email(String email) {
@@ -100,11 +127,12 @@ public class Customer implements Serializable {
     }
 
     public void setEmail(String email) {
-        this.email = email;
+        this.email = encryptEmail(email);
+        this.plainEmail = null;
     }
 
     public String getTelephone() {
-        return this.telephone;
+        return this.telephone == null ? this.plainTelephone : this.telephone.get();
     }
 
     public Customer telephone(String telephone) {
@@ -113,11 +141,64 @@ public class Customer implements Serializable {
     }
 
     public void setTelephone(String telephone) {
-        this.telephone = telephone;
+        this.telephone = encryptTelephone(telephone);
+        this.plainTelephone = null;
+    }
+
+    /**
+     * @return the stored email without decrypting it: its cipher text or, if
+     * not encrypted yet, its plain text.
+     */
+    @JsonIgnore
+    public byte[] getEmailRawBytes() {
+        return rawBytes(this.email, this.plainEmail);
+    }
+
+    /**
+     * @return the stored telephone without decrypting it, like {@link #getEmailRawBytes()}.
+     */
+    @JsonIgnore
+    public byte[] getTelephoneRawBytes() {
+        return rawBytes(this.telephone, this.plainTelephone);
+    }
+
+    private static byte[] rawBytes(EncryptedValue<String> value, String plainValue) {
+        if (value != null) {
+            return value.getCipherText();
+        }
+        return plainValue == null ? null : plainValue.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the given email encrypted as stored in the {@code email} column.
+     */
+    public static EncryptedValue<String> encryptEmail(String email) {
+        return EncryptedValue.of(email, EMAIL_ENCRYPTION);
+    }
+
+    /**
+     * @return the given telephone encrypted as stored in the {@code telephone} column.
+     */
+    public static EncryptedValue<String> encryptTelephone(String telephone) {
+        return EncryptedValue.of(telephone, TELEPHONE_ENCRYPTION);
+    }
+
+    /**
+     * @return the given email encrypted with every key, to find it whichever key it is stored with.
+     */
+    public static List<EncryptedValue<String>> encryptEmailWithAllKeys(String email) {
+        return EMAIL_ENCRYPTION.encryptWithAllKeys(email);
+    }
+
+    /**
+     * @return the given telephone encrypted with every key, to find it whichever key it is stored with.
+     */
+    public static List<EncryptedValue<String>> encryptTelephoneWithAllKeys(String telephone) {
+        return TELEPHONE_ENCRYPTION.encryptWithAllKeys(telephone);
     }
 
     public String getAddressRaw() {
-        return this.addressRaw;
+        return this.address == null ? null : EncryptionUtils.hex(this.address.getCipherText());
     }
 
     public Customer addressRaw(String addressRaw) {
@@ -126,17 +207,57 @@ public class Customer implements Serializable {
     }
 
     public void setAddressRaw(String addressRaw) {
-        this.addressRaw = addressRaw;
+        setAddressRawBytes(addressRaw == null ? null : EncryptionUtils.decodeHexString(addressRaw));
     }
 
-    public CustomerAddress getAddress() {
-        this.address = ENCRYPTION_HELPER.decryptObject(id, this.address, this.addressRaw);
+    @JsonIgnore
+    public byte[] getAddressRawBytes() {
+        return this.address == null ? null : this.address.getCipherText();
+    }
+
+    public void setAddressRawBytes(byte[] addressRaw) {
+        this.address = EncryptedValue.ofCipherText(addressRaw, EncryptionHelper.forType(CustomerAddress.class), this.id);
+        // the cipher text comes from outside so its content must be indexed too
+        this.addressIndex = CustomerAddressIndex.ofEncrypted(this.address);
+    }
+
+    /**
+     * @return the holder of the address, to decrypt it in batches (see
+     * {@link com.fillumina.demo.jhcryptfield.security.BatchDecryptor}).
+     */
+    @JsonIgnore
+    public EncryptedValue<CustomerAddress> getEncryptedAddress() {
         return this.address;
     }
 
+    /**
+     * @return the blind indexes of the address, {@code null} if there is no
+     * address or blind indexes are not enabled.
+     */
+    @JsonIgnore
+    public CustomerAddressIndex getAddressIndex() {
+        return this.addressIndex;
+    }
+
+    /**
+     * Decrypts the address on first access only, a loaded address is given
+     * the id of the customer when decrypted.
+     */
+    public CustomerAddress getAddress() {
+        return this.address == null ? null : this.address.get();
+    }
+
+    /**
+     * Changes made to the returned address are only saved by setting it again,
+     * an unchanged address keeps its cipher text and doesn't cause an update.
+     * The address takes the id of the customer, if it has one.
+     */
     public void setAddress(CustomerAddress customerAddress) {
-        this.address = customerAddress;
-        this.addressRaw = ENCRYPTION_HELPER.encryptObject(customerAddress);
+        if (customerAddress != null && this.id != null) {
+            customerAddress.setId(this.id);
+        }
+        this.address = EncryptedValue.of(customerAddress);
+        this.addressIndex = CustomerAddressIndex.of(customerAddress);
     }
 
     public Customer address(CustomerAddress customerAddress) {
@@ -0,0 +1,197 @@
+package com.fillumina.demo.jhcryptfield.domain;
+
+import com.fillumina.demo.jhcryptfield.security.BlindIndex;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+/**
+ * The blind indexes of the searchable fields of the encrypted
+ * {@link CustomerAddress} of a {@link Customer} (see {@link BlindIndex}).
+ * Values are normalized before being indexed so that searches ignore case
+ * and, for postcodes, spaces.
+ * <p>
+ * The optional postcode prefix index groups the customers in coarse buckets
+ * answering range queries: the candidates of the prefixes spanned by the range
+ * are decrypted and filtered. It leaks which customers share the same area.
+ */
+@Embeddable
+public class CustomerAddressIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String POSTCODE = "postcode";
+    public static final String COUNTRY = "country";
+    public static final String CITY = "city";
+    public static final String POSTCODE_PREFIX = "postcode-prefix-";
+
+    /**
+     * The maximum number of prefixes a postcode range can span.
+     */
+    public static final int MAX_RANGE_PREFIXES = 100;
+
+    @Column(name = "address_postcode_bidx")
+    private byte[] postcode;
+
+    @Column(name = "address_country_bidx")
+    private byte[] country;
+
+    @Column(name = "address_city_bidx")
+    private byte[] city;
+
+    @Column(name = "address_postcode_prefix_bidx")
+    private byte[] postcodePrefix;
+
+    /**
+     * @return the indexes of the given address, {@code null} if there is no
+     * address or blind indexes are not enabled.
+     */
+    public static CustomerAddressIndex of(CustomerAddress address) {
+        if (address == null || !BlindIndex.getInstance().isEnabled()) {
+            return null;
+        }
+        CustomerAddressIndex index = new CustomerAddressIndex();
+        index.postcode = postcode(address.getPostcode());
+        index.country = country(address.getCountry());
+        index.city = city(address.getCity());
+        index.postcodePrefix = postcodePrefix(address.getPostcode());
+        return index;
+    }
+
+    /**
+     * Decrypts the address only if blind indexes are enabled.
+     *
+     * @return the indexes of the given address, {@code null} if there is no
+     * address, it cannot be decrypted or blind indexes are not enabled.
+     */
+    public static CustomerAddressIndex ofEncrypted(EncryptedValue<CustomerAddress> address) {
+        if (address == null || !BlindIndex.getInstance().isEnabled()) {
+            return null;
+        }
+        return of(address.get());
+    }
+
+    /**
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    public static byte[] postcode(String postcode) {
+        return BlindIndex.getInstance().compute(POSTCODE, normalizePostcode(postcode));
+    }
+
+    /**
+     * The prefix length is part of the indexed field name so the prefixes
+     * computed with a different length never match.
+     *
+     * @return the index of the prefix of the given postcode, {@code null} if
+     * the prefix is not indexed or the postcode is shorter than the prefix.
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    public static byte[] postcodePrefix(String postcode) {
+        BlindIndex blindIndex = BlindIndex.getInstance();
+        int length = blindIndex.getPostcodePrefixLength();
+        String normalized = normalizePostcode(postcode);
+        if (length == 0 || normalized == null || normalized.length() < length) {
+            return null;
+        }
+        return blindIndex.compute(POSTCODE_PREFIX + length, normalized.substring(0, length));
+    }
+
+    /**
+     * Enumerates the prefixes of the postcodes between {@code from} and
+     * {@code to}: if their prefixes differ they must be numeric.
+     *
+     * @return the indexes of the prefixes of the given range of postcodes.
+     * @throws IllegalArgumentException if the range is empty, its bounds are
+     * shorter than the prefix or it spans more than {@value #MAX_RANGE_PREFIXES} prefixes.
+     * @throws IllegalStateException if the postcode prefix is not indexed.
+     */
+    public static List<byte[]> postcodePrefixRange(String from, String to) {
+        int length = BlindIndex.getInstance().getPostcodePrefixLength();
+        if (length == 0) {
+            throw new IllegalStateException("Postcode prefixes are not indexed");
+        }
+        String normalizedFrom = normalizePostcode(from);
+        String normalizedTo = normalizePostcode(to);
+        if (normalizedFrom == null || normalizedTo == null || normalizedFrom.length() < length || normalizedTo.length() < length) {
+            throw new IllegalArgumentException("Postcode range bounds shorter than " + length);
+        }
+        String fromPrefix = normalizedFrom.substring(0, length);
+        String toPrefix = normalizedTo.substring(0, length);
+        if (normalizedFrom.compareTo(normalizedTo) > 0) {
+            throw new IllegalArgumentException("Empty postcode range");
+        }
+        if (fromPrefix.equals(toPrefix)) {
+            return List.of(postcodePrefix(fromPrefix));
+        }
+        if (!isDigits(fromPrefix) || !isDigits(toPrefix)) {
+            throw new IllegalArgumentException("Postcode prefixes not numeric");
+        }
+        long first = Long.parseLong(fromPrefix);
+        long last = Long.parseLong(toPrefix);
+        if (last - first >= MAX_RANGE_PREFIXES) {
+            throw new IllegalArgumentException("Postcode range too wide");
+        }
+        List<byte[]> prefixes = new ArrayList<>((int) (last - first + 1));
+        for (long i = first; i <= last; i++) {
+            prefixes.add(postcodePrefix(String.format("%0" + length + "d", i)));
+        }
+        return prefixes;
+    }
+
+    /**
+     * @return {@code true} if the given postcode is between {@code from} and
+     * {@code to} included, compared as normalized strings (so numeric
+     * postcodes must have the same length).
+     */
+    public static boolean isPostcodeInRange(String postcode, String from, String to) {
+        String normalized = normalizePostcode(postcode);
+        return normalized != null && normalized.compareTo(normalizePostcode(from)) >= 0 && normalized.compareTo(normalizePostcode(to)) <= 0;
+    }
+
+    private static String normalizePostcode(String postcode) {
+        return postcode == null ? null : postcode.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    public static byte[] country(String country) {
+        return BlindIndex.getInstance().compute(COUNTRY, country == null ? null : country.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    public static byte[] city(String city) {
+        return BlindIndex.getInstance().compute(CITY, city == null ? null : city.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+    }
+
+    public byte[] getPostcode() {
+        return postcode;
+    }
+
+    public byte[] getCountry() {
+        return country;
+    }
+
+    public byte[] getCity() {
+        return city;
+    }
+
+    public byte[] getPostcodePrefix() {
+        return postcodePrefix;
+    }
+}
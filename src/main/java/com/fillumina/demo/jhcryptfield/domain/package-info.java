@@ -1,4 +1,9 @@
 /**
  * JPA domain objects.
  */
+@TypeDef(name = EncryptedType.NAME, typeClass = EncryptedType.class, defaultForType = EncryptedValue.class)
 package com.fillumina.demo.jhcryptfield.domain;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptedType;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import org.hibernate.annotations.TypeDef;
@@ -0,0 +1,64 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+
+/**
+ * Writes the encrypted columns of a customer without loading the entity.
+ */
+public interface CustomerAddressUpdateRepository {
+    /**
+     * Replaces the address of the given customer, and its blind indexes, with
+     * a single statement and evicts the customer from the second level cache.
+     * A {@code Customer} of the current persistence context is not updated.
+     *
+     * @return the number of updated rows, 0 if the customer doesn't exist.
+     */
+    int updateAddress(Long id, EncryptedValue<CustomerAddress> address);
+
+    /**
+     * Like {@link #updateAddress(Long, EncryptedValue)} but the address is only
+     * replaced if its cipher text is still the expected one, so a concurrent
+     * modification is never overwritten.
+     *
+     * @param expected the address read before, {@code null} if there was none.
+     * @return the number of updated rows, 0 if the customer doesn't exist or
+     * its address has changed.
+     */
+    int replaceAddress(Long id, EncryptedValue<CustomerAddress> expected, EncryptedValue<CustomerAddress> address);
+
+    /**
+     * Replaces the cipher text of the address with another encryption of the
+     * same address, e.g. with another key, keeping its blind indexes. Only the
+     * customer is evicted from the second level cache.
+     *
+     * @param expected the cipher text read before.
+     * @return the number of updated rows, 0 if the customer doesn't exist or
+     * its address has changed.
+     */
+    int reEncryptAddress(Long id, EncryptedValue<CustomerAddress> expected, EncryptedValue<CustomerAddress> address);
+
+    /**
+     * Replaces the cipher text of the email with another encryption of the same
+     * email, e.g. with another key, if it is still the expected one.
+     *
+     * @return the number of updated rows, 0 if the customer doesn't exist or
+     * its email has changed.
+     */
+    int reEncryptEmail(Long id, byte[] expected, byte[] email);
+
+    /**
+     * Like {@link #reEncryptEmail(Long, byte[], byte[])} for the telephone.
+     */
+    int reEncryptTelephone(Long id, byte[] expected, byte[] telephone);
+
+    /**
+     * Recomputes the blind indexes of the given address (see
+     * {@link com.fillumina.demo.jhcryptfield.domain.CustomerAddressIndex}),
+     * only if the address of the customer is still the given one.
+     *
+     * @return the number of updated rows, 0 if the customer doesn't exist or
+     * its address has changed.
+     */
+    int updateAddressIndex(Long id, EncryptedValue<CustomerAddress> address);
+}
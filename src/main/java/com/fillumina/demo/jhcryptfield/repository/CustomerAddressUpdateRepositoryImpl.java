@@ -0,0 +1,141 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddressIndex;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A bulk JPQL update would make Hibernate evict the whole {@code Customer}
+ * region of the second level cache, the native update declares no query space
+ * instead and only the updated entry is evicted.
+ */
+public class CustomerAddressUpdateRepositoryImpl implements CustomerAddressUpdateRepository {
+
+    private static final String SET_INDEX =
+        "address_postcode_bidx = :postcode, address_country_bidx = :country, address_city_bidx = :city," +
+        " address_postcode_prefix_bidx = :postcodePrefix";
+
+    private static final String UPDATE_ADDRESS = "update customer set address_raw = :address, " + SET_INDEX + " where id = :id";
+
+    private static final String REPLACE_ADDRESS = UPDATE_ADDRESS + " and address_raw = :expected";
+
+    private static final String REPLACE_MISSING_ADDRESS = UPDATE_ADDRESS + " and address_raw is null";
+
+    private static final String RE_ENCRYPT_ADDRESS =
+        "update customer set address_raw = :address where id = :id and address_raw = :expected";
+
+    private static final String RE_ENCRYPT_EMAIL = "update customer set email = :value where id = :id and email = :expected";
+
+    private static final String RE_ENCRYPT_TELEPHONE =
+        "update customer set telephone = :value where id = :id and telephone = :expected";
+
+    private static final String UPDATE_ADDRESS_INDEX = "update customer set " + SET_INDEX + " where id = :id and address_raw = :address";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateAddress(Long id, EncryptedValue<CustomerAddress> address) {
+        return execute(createUpdate(UPDATE_ADDRESS, id, address), id);
+    }
+
+    @Override
+    public int replaceAddress(Long id, EncryptedValue<CustomerAddress> expected, EncryptedValue<CustomerAddress> address) {
+        if (expected == null) {
+            return execute(createUpdate(REPLACE_MISSING_ADDRESS, id, address), id);
+        }
+        return execute(
+            createUpdate(REPLACE_ADDRESS, id, address).setParameter("expected", expected.getCipherText(), StandardBasicTypes.BINARY),
+            id
+        );
+    }
+
+    @Override
+    public int reEncryptAddress(Long id, EncryptedValue<CustomerAddress> expected, EncryptedValue<CustomerAddress> address) {
+        return execute(
+            entityManager
+                .createNativeQuery(RE_ENCRYPT_ADDRESS)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("")
+                .setParameter("address", address.getCipherText(), StandardBasicTypes.BINARY)
+                .setParameter("expected", expected.getCipherText(), StandardBasicTypes.BINARY)
+                .setParameter("id", id, StandardBasicTypes.LONG),
+            id
+        );
+    }
+
+    @Override
+    public int reEncryptEmail(Long id, byte[] expected, byte[] email) {
+        return execute(createReEncrypt(RE_ENCRYPT_EMAIL, id, expected, email), id);
+    }
+
+    @Override
+    public int reEncryptTelephone(Long id, byte[] expected, byte[] telephone) {
+        return execute(createReEncrypt(RE_ENCRYPT_TELEPHONE, id, expected, telephone), id);
+    }
+
+    @Override
+    public int updateAddressIndex(Long id, EncryptedValue<CustomerAddress> address) {
+        return execute(createUpdate(UPDATE_ADDRESS_INDEX, id, address), id);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private NativeQuery createUpdate(String sql, Long id, EncryptedValue<CustomerAddress> address) {
+        // the address is usually just set, so it is not decrypted again
+        CustomerAddressIndex index = CustomerAddressIndex.ofEncrypted(address);
+        return entityManager
+            .createNativeQuery(sql)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("")
+            .setParameter("address", address == null ? null : address.getCipherText(), StandardBasicTypes.BINARY)
+            .setParameter("postcode", index == null ? null : index.getPostcode(), StandardBasicTypes.BINARY)
+            .setParameter("country", index == null ? null : index.getCountry(), StandardBasicTypes.BINARY)
+            .setParameter("city", index == null ? null : index.getCity(), StandardBasicTypes.BINARY)
+            .setParameter("postcodePrefix", index == null ? null : index.getPostcodePrefix(), StandardBasicTypes.BINARY)
+            .setParameter("id", id, StandardBasicTypes.LONG);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private NativeQuery createReEncrypt(String sql, Long id, byte[] expected, byte[] value) {
+        return entityManager
+            .createNativeQuery(sql)
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace("")
+            .setParameter("value", value, StandardBasicTypes.BINARY)
+            .setParameter("expected", expected, StandardBasicTypes.BINARY)
+            .setParameter("id", id, StandardBasicTypes.LONG);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private int execute(NativeQuery update, Long id) {
+        int count = update.executeUpdate();
+        if (count > 0) {
+            evict(id);
+        }
+        return count;
+    }
+
+    private void evict(Long id) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        cache.evict(Customer.class, id);
+        // the old row may be cached again by another transaction before the commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        cache.evict(Customer.class, id);
+                    }
+                }
+            );
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination of the customers, see {@link KeysetCursor}.
+ */
+public interface CustomerKeysetRepository {
+    /**
+     * The properties customers can be sorted by besides the id, encrypted
+     * properties cannot be sorted.
+     */
+    Map<String, Function<Customer, String>> KEYSET_PROPERTIES = Map.of(
+        "firstName",
+        Customer::getFirstName,
+        "lastName",
+        Customer::getLastName
+    );
+
+    /**
+     * @return at most {@code limit} customers following the cursor position.
+     * @throws IllegalArgumentException if the cursor sort property is not in {@link #KEYSET_PROPERTIES}.
+     */
+    List<Customer> findAfter(KeysetCursor cursor, int limit);
+}
@@ -0,0 +1,100 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Rows are compared on the raw sort column so that the seek uses the
+ * {@code (column, id)} indexes. Databases don't agree on where {@code null}s
+ * go, so they are read by a separate query: they come first in ascending order
+ * and last in descending order, sorted by id.
+ */
+public class CustomerKeysetRepositoryImpl implements CustomerKeysetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Customer> findAfter(KeysetCursor cursor, int limit) {
+        if (!cursor.isById() && !KEYSET_PROPERTIES.containsKey(cursor.getProperty())) {
+            throw new IllegalArgumentException("Cannot sort by " + cursor.getProperty());
+        }
+        boolean ascending = cursor.getDirection().isAscending();
+        if (cursor.isById()) {
+            return findValues(null, ascending, null, cursor.getLastId(), limit);
+        }
+        String property = cursor.getProperty();
+        boolean inNulls = !cursor.isFirst() && cursor.getLastValue() == null;
+        List<Customer> customers = new ArrayList<>();
+        if (ascending) {
+            if (cursor.isFirst() || inNulls) {
+                customers.addAll(findNulls(property, true, cursor.getLastId(), limit));
+            }
+            if (customers.size() < limit) {
+                String lastValue = inNulls ? null : cursor.getLastValue();
+                Long lastId = lastValue == null ? null : cursor.getLastId();
+                customers.addAll(findValues(property, true, lastValue, lastId, limit - customers.size()));
+            }
+        } else {
+            if (!inNulls) {
+                customers.addAll(findValues(property, false, cursor.getLastValue(), cursor.getLastId(), limit));
+            }
+            if (customers.size() < limit) {
+                customers.addAll(findNulls(property, false, inNulls ? cursor.getLastId() : null, limit - customers.size()));
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * @param property the sort property, {@code null} to sort by id only.
+     * @param lastValue the value of the last row, {@code null} for the first row having a value.
+     */
+    private List<Customer> findValues(String property, boolean ascending, String lastValue, Long lastId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Customer> query = cb.createQuery(Customer.class);
+        Root<Customer> customer = query.from(Customer.class);
+        Path<Long> id = customer.get(KeysetCursor.ID);
+        if (property == null) {
+            if (lastId != null) {
+                query.where(ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId));
+            }
+            query.orderBy(ascending ? cb.asc(id) : cb.desc(id));
+        } else {
+            Path<String> value = customer.get(property);
+            if (lastValue == null) {
+                query.where(cb.isNotNull(value));
+            } else {
+                Predicate afterValue = ascending ? cb.greaterThan(value, lastValue) : cb.lessThan(value, lastValue);
+                Predicate afterId = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+                query.where(cb.or(afterValue, cb.and(cb.equal(value, lastValue), afterId)));
+            }
+            query.orderBy(ascending ? cb.asc(value) : cb.desc(value), ascending ? cb.asc(id) : cb.desc(id));
+        }
+        return entityManager.createQuery(query.select(customer)).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * @param lastId the id of the last row with no value, {@code null} for the first one.
+     */
+    private List<Customer> findNulls(String property, boolean ascending, Long lastId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Customer> query = cb.createQuery(Customer.class);
+        Root<Customer> customer = query.from(Customer.class);
+        Path<Long> id = customer.get(KeysetCursor.ID);
+        Predicate isNull = cb.isNull(customer.get(property));
+        if (lastId != null) {
+            isNull = cb.and(isNull, ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId));
+        }
+        query.where(isNull).orderBy(ascending ? cb.asc(id) : cb.desc(id));
+        return entityManager.createQuery(query.select(customer)).setMaxResults(limit).getResultList();
+    }
+}
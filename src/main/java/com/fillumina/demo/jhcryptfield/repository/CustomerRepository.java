@@ -1,7 +1,21 @@
 package com.fillumina.demo.jhcryptfield.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddressIndex;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +23,226 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Long> {}
+public interface CustomerRepository extends JpaRepository<Customer, Long>, CustomerKeysetRepository, CustomerAddressUpdateRepository {
+    /**
+     * Rows fetched at once by the streaming queries.
+     */
+    int STREAM_FETCH_SIZE = 100;
+
+    /**
+     * The encrypted address of a customer, without loading the entity: only
+     * the two columns are read and nothing is added to the persistence context.
+     */
+    interface AddressRaw {
+        Long getId();
+
+        EncryptedValue<CustomerAddress> getAddressRaw();
+
+        /**
+         * @return the decrypted address with the id of the customer, {@code null}
+         * if there is no address or it cannot be decrypted.
+         */
+        default CustomerAddress decrypt() {
+            EncryptedValue<CustomerAddress> addressRaw = getAddressRaw();
+            CustomerAddress address = addressRaw == null ? null : addressRaw.get();
+            if (address != null) {
+                address.setId(getId());
+            }
+            return address;
+        }
+    }
+
+    /**
+     * Locks the row until the end of the transaction, so that the customer can
+     * be checked before being modified.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Customer c where c.id = :id")
+    Optional<Customer> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select c.id as id, c.address as addressRaw from Customer c where c.id = :id")
+    Optional<AddressRaw> findAddressRawById(@Param("id") Long id);
+
+    @Query(
+        value = "select c.id as id, c.address as addressRaw from Customer c where c.address is not null",
+        countQuery = "select count(c) from Customer c where c.address is not null"
+    )
+    Page<AddressRaw> findAllAddressRaw(Pageable pageable);
+
+    /**
+     * Must be consumed within a read-only transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select c.id as id, c.address as addressRaw from Customer c where c.address is not null order by c.id")
+    Stream<AddressRaw> streamAllAddressRaw();
+
+    @Query("select c.id as id, c.address as addressRaw from Customer c where c.id > :afterId and c.address is not null order by c.id")
+    List<AddressRaw> findAddressRawByIdGreaterThan(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * The addresses without blind indexes, i.e. saved before indexing was
+     * enabled, or without the postcode prefix index if it must be indexed.
+     */
+    @Query(
+        "select c.id as id, c.address as addressRaw from Customer c where c.id > :afterId and c.address is not null" +
+        " and ((c.addressIndex.postcode is null and c.addressIndex.country is null and c.addressIndex.city is null)" +
+        " or (:withPrefix = true and c.addressIndex.postcodePrefix is null)) order by c.id"
+    )
+    List<AddressRaw> findUnindexedAddressRawByIdGreaterThan(
+        @Param("afterId") Long afterId,
+        @Param("withPrefix") boolean withPrefix,
+        Pageable pageable
+    );
+
+    /**
+     * The candidates of a postcode range query after the given id, to be
+     * decrypted and filtered (see {@link CustomerAddressIndex#postcodePrefixRange(String, String)}).
+     */
+    @Query(
+        "select c.id as id, c.address as addressRaw from Customer c" +
+        " where c.addressIndex.postcodePrefix in :prefixes and c.id > :afterId order by c.id"
+    )
+    List<AddressRaw> findAddressRawByPostcodePrefixIndexInAndIdGreaterThan(
+        @Param("prefixes") List<byte[]> postcodePrefixIndexes,
+        @Param("afterId") Long afterId,
+        Pageable pageable
+    );
+
+    @Query(
+        value = "select c.id as id, c.address as addressRaw from Customer c where c.addressIndex.postcode = :postcode",
+        countQuery = "select count(c) from Customer c where c.addressIndex.postcode = :postcode"
+    )
+    Page<AddressRaw> findAddressRawByPostcodeIndex(@Param("postcode") byte[] postcodeIndex, Pageable pageable);
+
+    @Query(
+        value = "select c.id as id, c.address as addressRaw from Customer c where c.addressIndex.country = :country",
+        countQuery = "select count(c) from Customer c where c.addressIndex.country = :country"
+    )
+    Page<AddressRaw> findAddressRawByCountryIndex(@Param("country") byte[] countryIndex, Pageable pageable);
+
+    @Query(
+        value = "select c.id as id, c.address as addressRaw from Customer c" +
+        " where c.addressIndex.postcode = :postcode and c.addressIndex.country = :country",
+        countQuery = "select count(c) from Customer c where c.addressIndex.postcode = :postcode and c.addressIndex.country = :country"
+    )
+    Page<AddressRaw> findAddressRawByPostcodeAndCountryIndex(
+        @Param("postcode") byte[] postcodeIndex,
+        @Param("country") byte[] countryIndex,
+        Pageable pageable
+    );
+
+    /**
+     * Finds the addresses by the blind indexes of their postcode and country,
+     * only the matching rows are read (and so decrypted).
+     *
+     * @param postcode the postcode, ignored if {@code null}.
+     * @param country the country, ignored if {@code null}.
+     * @throws IllegalArgumentException if both postcode and country are {@code null}.
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    default Page<AddressRaw> searchAddressRaw(String postcode, String country, Pageable pageable) {
+        if (postcode == null && country == null) {
+            throw new IllegalArgumentException("No search criteria");
+        }
+        if (country == null) {
+            return findAddressRawByPostcodeIndex(CustomerAddressIndex.postcode(postcode), pageable);
+        }
+        if (postcode == null) {
+            return findAddressRawByCountryIndex(CustomerAddressIndex.country(country), pageable);
+        }
+        return findAddressRawByPostcodeAndCountryIndex(
+            CustomerAddressIndex.postcode(postcode),
+            CustomerAddressIndex.country(country),
+            pageable
+        );
+    }
+
+    List<Customer> findByAddressIndex_Postcode(byte[] postcodeIndex);
+
+    List<Customer> findByAddressIndex_Country(byte[] countryIndex);
+
+    List<Customer> findByAddressIndex_City(byte[] cityIndex);
+
+    /**
+     * Finds the customers by the blind index of their postcode, spaces and
+     * case are ignored.
+     *
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    default List<Customer> findAllByAddressPostcode(String postcode) {
+        return findByAddressIndex_Postcode(CustomerAddressIndex.postcode(postcode));
+    }
+
+    /**
+     * Finds the customers by the blind index of their country, case is ignored.
+     *
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    default List<Customer> findAllByAddressCountry(String country) {
+        return findByAddressIndex_Country(CustomerAddressIndex.country(country));
+    }
+
+    /**
+     * Finds the customers by the blind index of their city, case and repeated
+     * spaces are ignored.
+     *
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    default List<Customer> findAllByAddressCity(String city) {
+        return findByAddressIndex_City(CustomerAddressIndex.city(city));
+    }
+
+    /**
+     * Email and telephone are encrypted deterministically, the searched value
+     * is encrypted the same way, with every key, and compared with the indexed
+     * column.
+     */
+    List<Customer> findByEmailIn(Collection<EncryptedValue<String>> emails);
+
+    List<Customer> findByTelephoneIn(Collection<EncryptedValue<String>> telephones);
+
+    /**
+     * Finds the customers by email without decrypting any row, also the ones
+     * not re-encrypted with the active key yet. The ones still saved in plain
+     * text are not found.
+     */
+    default List<Customer> findAllByEmail(String email) {
+        return findByEmailIn(Customer.encryptEmailWithAllKeys(email));
+    }
+
+    /**
+     * Finds the customers by telephone without decrypting any row, also the
+     * ones not re-encrypted with the active key yet. The ones still saved in
+     * plain text are not found.
+     */
+    default List<Customer> findAllByTelephone(String telephone) {
+        return findByTelephoneIn(Customer.encryptTelephoneWithAllKeys(telephone));
+    }
+
+    /**
+     * The encrypted email and telephone of a customer, without loading the entity.
+     */
+    interface ContactRaw {
+        Long getId();
+
+        EncryptedValue<String> getEmail();
+
+        EncryptedValue<String> getTelephone();
+    }
+
+    @Query(
+        "select c.id as id, c.email as email, c.telephone as telephone from Customer c" +
+        " where c.id > :afterId and (c.email is not null or c.telephone is not null) order by c.id"
+    )
+    List<ContactRaw> findContactRawByIdGreaterThan(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * The customers whose email or telephone are still saved in plain text,
+     * locked until the end of the transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+        "select c from Customer c where c.id > :afterId and (c.plainEmail is not null or c.plainTelephone is not null) order by c.id"
+    )
+    List<Customer> findWithPlainContactByIdGreaterThan(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -0,0 +1,114 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Base64;
+import java.util.Objects;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The position of a keyset (seek) page: the sort and the key of the last row
+ * of the previous page. Unlike an offset the following page is found by an
+ * index seek so deep pages cost the same as the first one.
+ * <p>
+ * Rows are sorted by an optional property and then by id, which makes the
+ * order total. The cursor is exchanged with the clients as an opaque string
+ * (see {@link #encode()}) that is not meant to be built or parsed by them.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class KeysetCursor {
+
+    public static final String ID = "id";
+
+    private static final String SEPARATOR = ",";
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final Long lastId;
+    private final String lastValue;
+
+    private KeysetCursor(String property, Sort.Direction direction, Long lastId, String lastValue) {
+        this.property = Objects.requireNonNull(property);
+        this.direction = Objects.requireNonNull(direction);
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    /**
+     * @return the cursor of the first page sorted by the first order of the
+     * given sort, by id if unsorted.
+     */
+    public static KeysetCursor first(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc(ID));
+        return new KeysetCursor(order.getProperty(), order.getDirection(), null, null);
+    }
+
+    /**
+     * @return the cursor of the page following the given row.
+     * @param value the value of the sort property of the row, ignored when sorting by id.
+     */
+    public KeysetCursor next(Long id, String value) {
+        return new KeysetCursor(property, direction, Objects.requireNonNull(id), isById() ? null : value);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the given string is not a valid cursor.
+     */
+    public static KeysetCursor decode(String cursor) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), UTF_8).split(SEPARATOR, 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        String property = parts[0];
+        if (ID.equals(property) && parts.length != 3) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        // a missing value is a null one
+        return new KeysetCursor(property, Sort.Direction.fromString(parts[1]), Long.valueOf(parts[2]), parts.length == 4 ? parts[3] : null);
+    }
+
+    public String encode() {
+        StringBuilder buf = new StringBuilder().append(property).append(SEPARATOR).append(direction).append(SEPARATOR).append(lastId);
+        if (!isById() && lastValue != null) {
+            buf.append(SEPARATOR).append(lastValue);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.toString().getBytes(UTF_8));
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isById() {
+        return ID.equals(property);
+    }
+
+    /**
+     * @return {@code true} if this is the cursor of the first page.
+     */
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public Long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return the value of the sort property of the last row, {@code null}
+     * if the row has no value.
+     */
+    public String getLastValue() {
+        return lastValue;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" + property + " " + direction + ", lastId=" + lastId + "}";
+    }
+}
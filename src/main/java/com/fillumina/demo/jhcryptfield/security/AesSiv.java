@@ -0,0 +1,228 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-SIV (RFC 5297), a deterministic authenticated encryption: the IV is a
+ * MAC (S2V, based on AES-CMAC) of the additional data and of the plain text,
+ * which is then encrypted with AES-CTR. The same plain text encrypted with the
+ * same key and additional data always gives the same cipher text, which
+ * reveals that two values are equal but nothing else about them.
+ * <p>
+ * The JDK has no SIV mode so it is built on top of {@code AES/ECB/NoPadding}
+ * and {@code AES/CTR/NoPadding}, use it through {@link EncryptionUtils}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class AesSiv {
+
+    public static final int SIV_LENGTH_BYTE = 16;
+
+    private static final int BLOCK_LENGTH = 16;
+
+    private static final CipherPool MAC_POOL = new CipherPool("AES/ECB/NoPadding", EncryptionUtils.CIPHER_POOL_SIZE);
+
+    private static final CipherPool CTR_POOL = new CipherPool("AES/CTR/NoPadding", EncryptionUtils.CIPHER_POOL_SIZE);
+
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK_LENGTH];
+
+    /**
+     * The two AES keys of AES-SIV: the first computes the synthetic IV, the
+     * second encrypts.
+     */
+    public static final class Key {
+
+        private static final String DERIVATION_ALGO = "HmacSHA256";
+        private static final byte[] MAC_KEY_LABEL = "AES-SIV S2V".getBytes(US_ASCII);
+        private static final byte[] CTR_KEY_LABEL = "AES-SIV CTR".getBytes(US_ASCII);
+
+        private final SecretKey macKey;
+        private final SecretKey ctrKey;
+
+        /**
+         * @param key the two AES keys one after the other (32, 48 or 64 bytes).
+         */
+        public Key(byte[] key) {
+            if (key.length != 32 && key.length != 48 && key.length != 64) {
+                throw new IllegalArgumentException("Invalid AES-SIV key length: " + key.length);
+            }
+            int half = key.length / 2;
+            this.macKey = new SecretKeySpec(key, 0, half, "AES");
+            this.ctrKey = new SecretKeySpec(key, half, half, "AES");
+        }
+
+        /**
+         * Derives two independent 256 bits keys from the given one, so that the
+         * configured field encryption keys can be used with AES-SIV too.
+         */
+        public static Key derive(SecretKey key) throws EncryptionException {
+            byte[] bytes = new byte[64];
+            try {
+                Mac mac = Mac.getInstance(DERIVATION_ALGO);
+                mac.init(new SecretKeySpec(key.getEncoded(), DERIVATION_ALGO));
+                mac.update(MAC_KEY_LABEL);
+                mac.doFinal(bytes, 0);
+                mac.update(CTR_KEY_LABEL);
+                mac.doFinal(bytes, 32);
+                return new Key(bytes);
+            } catch (GeneralSecurityException ex) {
+                throw new EncryptionException(ex);
+            } finally {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        }
+    }
+
+    private AesSiv() {}
+
+    /**
+     * @return {@code header | SIV | cipher text}, the header is authenticated
+     * as additional data.
+     */
+    static byte[] encrypt(byte[] pText, int pOffset, int pLength, Key key, byte[] header) throws EncryptionException {
+        byte[] siv = s2v(key.macKey, header, 0, header.length, pText, pOffset, pLength);
+        int offset = header.length + SIV_LENGTH_BYTE;
+        byte[] cipherText = new byte[offset + pLength];
+        System.arraycopy(header, 0, cipherText, 0, header.length);
+        System.arraycopy(siv, 0, cipherText, header.length, SIV_LENGTH_BYTE);
+        ctr(key.ctrKey, siv, pText, pOffset, pLength, cipherText, offset);
+        return cipherText;
+    }
+
+    /**
+     * Decrypts {@code header | SIV | cipher text} into the given buffer,
+     * replacing its content.
+     *
+     * @throws EncryptionException if the cipher text or the header have been
+     * tampered with or the key is wrong.
+     */
+    static void decrypt(byte[] cText, int headerLength, Key key, PlainTextBuffer out) throws EncryptionException {
+        int offset = headerLength + SIV_LENGTH_BYTE;
+        if (cText.length < offset) {
+            throw new EncryptionException("Cipher text too short: " + cText.length + " bytes");
+        }
+        int length = cText.length - offset;
+        byte[] siv = Arrays.copyOfRange(cText, headerLength, offset);
+        byte[] buffer = out.ensureCapacity(length);
+        ctr(key.ctrKey, siv, cText, offset, length, buffer, 0);
+        byte[] expected = s2v(key.macKey, cText, 0, headerLength, buffer, 0, length);
+        // constant time comparison
+        int diff = 0;
+        for (int i = 0; i < SIV_LENGTH_BYTE; i++) {
+            diff |= expected[i] ^ siv[i];
+        }
+        if (diff != 0) {
+            Arrays.fill(buffer, 0, length, (byte) 0);
+            out.setSize(0);
+            throw new EncryptionException("AES-SIV authentication failed");
+        }
+        out.setSize(length);
+    }
+
+    private static void ctr(SecretKey key, byte[] siv, byte[] in, int inOffset, int length, byte[] out, int outOffset)
+        throws EncryptionException {
+        byte[] counter = siv.clone();
+        // clears the 31st and 63rd bits so the counter can be incremented as a 32 or 64 bits integer
+        counter[8] &= 0x7f;
+        counter[12] &= 0x7f;
+        Cipher cipher = CTR_POOL.borrow(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(counter));
+        try {
+            cipher.doFinal(in, inOffset, length, out, outOffset);
+            CTR_POOL.release(cipher);
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
+
+    /**
+     * S2V with the additional data and the plain text as the two input strings.
+     */
+    private static byte[] s2v(SecretKey key, byte[] ad, int adOffset, int adLength, byte[] pText, int pOffset, int pLength)
+        throws EncryptionException {
+        Cipher aes = MAC_POOL.borrow(Cipher.ENCRYPT_MODE, key, null);
+        try {
+            byte[] k1 = dbl(encryptBlock(aes, ZERO_BLOCK.clone()));
+            byte[] k2 = dbl(k1);
+            byte[] d = cmac(aes, k1, k2, ZERO_BLOCK, 0, BLOCK_LENGTH);
+            d = dbl(d);
+            xor(d, cmac(aes, k1, k2, ad, adOffset, adLength), 0, BLOCK_LENGTH);
+            byte[] result;
+            if (pLength >= BLOCK_LENGTH) {
+                // xorend: D is xored into the last block of the plain text
+                byte[] t = Arrays.copyOfRange(pText, pOffset, pOffset + pLength);
+                for (int i = 0; i < BLOCK_LENGTH; i++) {
+                    t[pLength - BLOCK_LENGTH + i] ^= d[i];
+                }
+                result = cmac(aes, k1, k2, t, 0, pLength);
+                Arrays.fill(t, (byte) 0);
+            } else {
+                byte[] t = dbl(d);
+                xor(t, pText, pOffset, pLength);
+                t[pLength] ^= (byte) 0x80;
+                result = cmac(aes, k1, k2, t, 0, BLOCK_LENGTH);
+            }
+            MAC_POOL.release(aes);
+            return result;
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
+
+    /**
+     * AES-CMAC (RFC 4493) with the given subkeys.
+     */
+    private static byte[] cmac(Cipher aes, byte[] k1, byte[] k2, byte[] m, int offset, int length) throws GeneralSecurityException {
+        byte[] x = new byte[BLOCK_LENGTH];
+        int blocks = length == 0 ? 1 : (length + BLOCK_LENGTH - 1) / BLOCK_LENGTH;
+        for (int i = 0; i < blocks - 1; i++) {
+            xor(x, m, offset + i * BLOCK_LENGTH, BLOCK_LENGTH);
+            encryptBlock(aes, x);
+        }
+        int last = (blocks - 1) * BLOCK_LENGTH;
+        int remaining = length - last;
+        if (remaining == BLOCK_LENGTH) {
+            xor(x, m, offset + last, BLOCK_LENGTH);
+            xor(x, k1, 0, BLOCK_LENGTH);
+        } else {
+            xor(x, m, offset + last, remaining);
+            x[remaining] ^= (byte) 0x80;
+            xor(x, k2, 0, BLOCK_LENGTH);
+        }
+        return encryptBlock(aes, x);
+    }
+
+    private static byte[] encryptBlock(Cipher aes, byte[] block) throws GeneralSecurityException {
+        aes.doFinal(block, 0, BLOCK_LENGTH, block, 0);
+        return block;
+    }
+
+    /**
+     * Multiplies by x in GF(2^128).
+     */
+    private static byte[] dbl(byte[] block) {
+        byte[] result = new byte[BLOCK_LENGTH];
+        for (int i = 0; i < BLOCK_LENGTH - 1; i++) {
+            result[i] = (byte) ((block[i] << 1) | ((block[i + 1] & 0xff) >>> 7));
+        }
+        result[BLOCK_LENGTH - 1] = (byte) (block[BLOCK_LENGTH - 1] << 1);
+        if ((block[0] & 0x80) != 0) {
+            result[BLOCK_LENGTH - 1] ^= (byte) 0x87;
+        }
+        return result;
+    }
+
+    private static void xor(byte[] target, byte[] source, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            target[i] ^= source[offset + i];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties.Batch;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decrypts the {@link EncryptedValue}s of a page of entities before they are
+ * serialized, so that large pages use every core instead of decrypting one
+ * value at a time on the request thread.
+ * <p>
+ * Batches with fewer values than {@code application.field-encryption.batch.threshold}
+ * are decrypted on the calling thread, the others are split across a
+ * {@link ForkJoinPool} of {@code application.field-encryption.batch.parallelism}
+ * threads shared by all the requests, which bounds the CPU used for decryption
+ * whatever the number of concurrent requests. Decryption doesn't touch the
+ * persistence context so it is safe to run it outside the request thread.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+@Component
+public class BatchDecryptor {
+
+    private final int threshold;
+
+    private final ForkJoinPool pool;
+
+    public BatchDecryptor(ApplicationProperties applicationProperties) {
+        Batch batch = applicationProperties.getFieldEncryption().getBatch();
+        int parallelism = batch.getParallelism() > 0 ? batch.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.threshold = Math.max(1, batch.getThreshold());
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Decrypts the given values, the ones that cannot be decrypted are left as
+     * they are (see {@link EncryptedValue#get()}).
+     *
+     * @return the number of values decrypted, the ones already decrypted are
+     * skipped.
+     */
+    public int decryptAll(Collection<? extends EncryptedValue<?>> values) {
+        List<EncryptedValue<?>> list = new ArrayList<>(values.size());
+        for (EncryptedValue<?> value : values) {
+            if (value != null && !value.isDecrypted()) {
+                list.add(value);
+            }
+        }
+        if (list.size() < threshold) {
+            list.forEach(EncryptedValue::get);
+        } else {
+            pool.invoke(new DecryptAction(list, 0, list.size(), leafSize(list.size())));
+        }
+        return list.size();
+    }
+
+    /**
+     * Decrypts the encrypted field of the given entities.
+     *
+     * @return the number of values decrypted, like {@link #decryptAll(Collection)}.
+     */
+    public <E> int decryptAll(Collection<E> entities, Function<E, ? extends EncryptedValue<?>> field) {
+        List<EncryptedValue<?>> values = new ArrayList<>(entities.size());
+        for (E entity : entities) {
+            values.add(field.apply(entity));
+        }
+        return decryptAll(values);
+    }
+
+    // a few tasks per thread to balance values of different sizes
+    private int leafSize(int size) {
+        return Math.max(1, size / (pool.getParallelism() * 4));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static class DecryptAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<EncryptedValue<?>> values;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        DecryptAction(List<EncryptedValue<?>> values, int from, int to, int leafSize) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                for (int i = from; i < to; i++) {
+                    values.get(i).get();
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecryptAction(values, from, middle, leafSize), new DecryptAction(values, middle, to, leafSize));
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.io.IOException;
+
+/**
+ * Encodes values with the compact binary format of their {@link GeneratedCodec}:
+ * field names are not stored, only the field values in declaration order.
+ * <p>
+ * The payload starts with {@value #FORMAT_BINARY}, which cannot be the first
+ * byte of a JSON text, so the values encoded as JSON before this codec was
+ * introduced (or whose type has no generated codec) are still decoded by
+ * {@link JsonPayloadCodec}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class BinaryPayloadCodec implements PayloadCodec {
+
+    public static final byte FORMAT_BINARY = 1;
+
+    private final JsonPayloadCodec jsonPayloadCodec = new JsonPayloadCodec();
+
+    @Override
+    public void encode(Object value, PlainTextBuffer out) throws EncryptionException {
+        GeneratedCodec<Object> codec = JsonPayloadCodec.getGeneratedCodec(value.getClass());
+        if (codec == null) {
+            jsonPayloadCodec.encode(value, out);
+            return;
+        }
+        out.write(FORMAT_BINARY);
+        codec.writeBinary(value, new BinaryPayloadWriter(out));
+    }
+
+    @Override
+    public <T> T decode(byte[] plainText, int offset, int length, Class<T> type) throws EncryptionException {
+        if (length == 0 || plainText[offset] != FORMAT_BINARY) {
+            return jsonPayloadCodec.decode(plainText, offset, length, type);
+        }
+        GeneratedCodec<T> codec = JsonPayloadCodec.getGeneratedCodec(type);
+        if (codec == null) {
+            throw new EncryptionException("No binary codec for " + type.getSimpleName());
+        }
+        try {
+            return codec.readBinary(new BinaryPayloadReader(plainText, offset + 1, length - 1));
+        } catch (IOException ex) {
+            throw new EncryptionException("Cannot deserialize " + type.getSimpleName(), ex);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Reads the payload written by {@link BinaryPayloadWriter}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class BinaryPayloadReader {
+
+    private final byte[] buffer;
+    private final int end;
+    private int position;
+
+    public BinaryPayloadReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    public int readByte() throws IOException {
+        if (position >= end) {
+            throw new EOFException("Truncated payload");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public int readFieldCount() throws IOException {
+        return (int) readVarLong();
+    }
+
+    /**
+     * @return {@code false} if a nullable value is {@code null}.
+     */
+    public boolean readPresent() throws IOException {
+        return readByte() != 0;
+    }
+
+    public String readString() throws IOException {
+        long length = readVarLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > end - position) {
+            throw new EOFException("Truncated payload");
+        }
+        String value = new String(buffer, position, (int) length, UTF_8);
+        position += (int) length;
+        return value;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public short readShort() throws IOException {
+        return (short) readLong();
+    }
+
+    public int readInt() throws IOException {
+        return (int) readLong();
+    }
+
+    public long readLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat((int) readFixed(4));
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readFixed(8));
+    }
+
+    private long readFixed(int length) throws IOException {
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits = (bits << 8) | readByte();
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,105 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes the compact binary payload of {@link BinaryPayloadCodec}: integers are
+ * zig-zag varints, strings are prefixed by their UTF-8 length plus one
+ * ({@code 0} is {@code null}) and nullable values by a presence byte.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class BinaryPayloadWriter {
+
+    private static final int MAX_VARINT_LENGTH = 10;
+
+    private final PlainTextBuffer buffer;
+
+    public BinaryPayloadWriter(PlainTextBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public void writeByte(int value) {
+        buffer.write(value);
+    }
+
+    private void writeVarLong(long value) {
+        int position = buffer.size();
+        byte[] array = buffer.ensureCapacity(position + MAX_VARINT_LENGTH);
+        while ((value & ~0x7FL) != 0) {
+            array[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        array[position++] = (byte) value;
+        buffer.setSize(position);
+    }
+
+    public void writeFieldCount(int count) {
+        writeVarLong(count);
+    }
+
+    public void writeNull() {
+        writeByte(0);
+    }
+
+    public void writePresent() {
+        writeByte(1);
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                byte[] bytes = value.getBytes(UTF_8);
+                writeVarLong(bytes.length + 1L);
+                buffer.write(bytes, 0, bytes.length);
+                return;
+            }
+        }
+        // ASCII, the common case, is copied without an intermediate array
+        writeVarLong(length + 1L);
+        int position = buffer.size();
+        byte[] array = buffer.ensureCapacity(position + length);
+        for (int i = 0; i < length; i++) {
+            array[position++] = (byte) value.charAt(i);
+        }
+        buffer.setSize(position);
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeShort(short value) {
+        writeLong(value);
+    }
+
+    public void writeInt(int value) {
+        writeLong(value);
+    }
+
+    public void writeLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeFloat(float value) {
+        writeFixed(Float.floatToIntBits(value), 4);
+    }
+
+    public void writeDouble(double value) {
+        writeFixed(Double.doubleToLongBits(value), 8);
+    }
+
+    private void writeFixed(long bits, int length) {
+        int position = buffer.size();
+        byte[] array = buffer.ensureCapacity(position + length);
+        for (int i = length - 1; i >= 0; i--) {
+            array[position++] = (byte) (bits >>> (i * 8));
+        }
+        buffer.setSize(position);
+    }
+}
@@ -0,0 +1,132 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes the blind indexes of encrypted fields: a keyed HMAC of the
+ * normalized value of a field, stored in its own column, lets the database
+ * find the rows having a given value without decrypting them.
+ * <p>
+ * The index reveals which rows share the same value (and so the frequency of
+ * each value) to whoever can read the table, but not the value itself as long
+ * as the key {@code application.field-encryption.blind-index} is kept secret.
+ * Indexes are truncated to {@value #LENGTH} bytes, collisions are negligible.
+ * <p>
+ * Like {@link EncryptionKeyRegistry} the key is derived in background at
+ * startup and JPA entities access the indexer through {@link #getInstance()}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+@Component
+public class BlindIndex {
+
+    public static final int LENGTH = 16;
+
+    private static final String MAC_ALGO = "HmacSHA256";
+
+    // used until the application context is started, doesn't index anything
+    private static final BlindIndex DISABLED = new BlindIndex();
+
+    private static volatile BlindIndex instance = DISABLED;
+
+    private final CompletableFuture<SecretKeySpec> key;
+
+    private final ThreadLocal<Mac> mac;
+
+    private final int postcodePrefixLength;
+
+    private BlindIndex() {
+        this.key = null;
+        this.mac = null;
+        this.postcodePrefixLength = 0;
+    }
+
+    // the private constructor of the disabled instance would be picked otherwise
+    @Autowired
+    public BlindIndex(ApplicationProperties applicationProperties, @Qualifier("taskExecutor") Executor executor) {
+        ApplicationProperties.BlindIndex config = applicationProperties.getFieldEncryption().getBlindIndex();
+        if (config.isEnabled()) {
+            if (config.getPassword() == null || config.getSalt() == null) {
+                throw new IllegalArgumentException("Blind index secret without password or salt");
+            }
+            final char[] password = config.getPassword().toCharArray();
+            final byte[] salt = config.getSalt().getBytes(UTF_8);
+            this.key =
+                CompletableFuture.supplyAsync(
+                    () -> new SecretKeySpec(EncryptionUtils.getAESKeyFromPassword(password, salt).getEncoded(), MAC_ALGO),
+                    executor
+                );
+            this.mac = ThreadLocal.withInitial(this::createMac);
+        } else {
+            this.key = null;
+            this.mac = null;
+        }
+        this.postcodePrefixLength = config.isEnabled() ? Math.max(0, config.getPostcodePrefixLength()) : 0;
+        instance = this;
+    }
+
+    /**
+     * @return the indexer created by Spring, a disabled one if the
+     * application context is not started yet.
+     */
+    public static BlindIndex getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    /**
+     * @return the length of the indexed postcode prefix, {@code 0} if the
+     * prefix is not indexed.
+     */
+    public int getPostcodePrefixLength() {
+        return postcodePrefixLength;
+    }
+
+    /**
+     * @param field the name of the field, so that the same value in different
+     * fields has different indexes.
+     * @param value the normalized value.
+     * @return the index of the value, {@code null} if the value is {@code null}.
+     * @throws IllegalStateException if blind indexes are not enabled.
+     */
+    public byte[] compute(String field, String value) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Blind indexes are not enabled");
+        }
+        if (value == null) {
+            return null;
+        }
+        Mac m = mac.get();
+        m.update(field.getBytes(UTF_8));
+        m.update((byte) 0);
+        return Arrays.copyOf(m.doFinal(value.getBytes(UTF_8)), LENGTH);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac m = Mac.getInstance(MAC_ALGO);
+            m.init(key.join());
+            return m;
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptionException(ex);
+        } catch (CompletionException ex) {
+            throw new EncryptionException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+
+/**
+ * Encrypts and decrypts the plain text produced by a {@link PayloadCodec}.
+ * Implementations must be thread safe and have a public no-args constructor
+ * to be usable in {@link Encrypted#engine()}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public interface CipherEngine {
+    byte[] encrypt(byte[] plainText, int offset, int length) throws EncryptionException;
+
+    /**
+     * Decrypts into the given buffer, replacing its content.
+     */
+    void decrypt(byte[] cipherText, PlainTextBuffer out) throws EncryptionException;
+
+    default byte[] encrypt(byte[] plainText) throws EncryptionException {
+        return encrypt(plainText, 0, plainText.length);
+    }
+
+    default byte[] decrypt(byte[] cipherText) throws EncryptionException {
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            decrypt(cipherText, buffer);
+            return buffer.toByteArray();
+        }
+    }
+}
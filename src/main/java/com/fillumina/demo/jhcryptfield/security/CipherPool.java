@@ -0,0 +1,95 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.crypto.Cipher;
+
+/**
+ * Bounded lock-free pool of {@link Cipher} instances of a single transformation.
+ * <p>
+ * {@link Cipher#getInstance(String)} performs a provider lookup and allocates
+ * a new object on each call so reusing instances saves a lot of work on the
+ * per-row encryption path. A borrowed cipher is owned exclusively by the caller
+ * until it's given back with {@link #release(Cipher)}. A cipher that failed
+ * should not be released: it will be simply garbage collected and replaced
+ * by a fresh one when needed.
+ * <p>
+ * The pool never blocks: if no cipher is available a new one is created and
+ * if the pool is full when releasing the cipher is dropped.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class CipherPool {
+
+    private final String transformation;
+    private final AtomicReferenceArray<Cipher> slots;
+
+    public CipherPool(String transformation, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid pool size: " + size);
+        }
+        this.transformation = transformation;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    public String getTransformation() {
+        return transformation;
+    }
+
+    public int getSize() {
+        return slots.length();
+    }
+
+    /**
+     * @return a cipher initialized with the given parameters. It must be given
+     * back with {@link #release(Cipher)} after use.
+     */
+    public Cipher borrow(int opmode, Key key, AlgorithmParameterSpec params) throws EncryptionException {
+        Cipher cipher = poll();
+        try {
+            if (cipher == null) {
+                cipher = Cipher.getInstance(transformation);
+            }
+            cipher.init(opmode, key, params);
+            return cipher;
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
+
+    /**
+     * Gives back a cipher borrowed with {@link #borrow(int, Key, AlgorithmParameterSpec)}.
+     * The cipher must not be used by the caller afterward.
+     */
+    public void release(Cipher cipher) {
+        final int size = slots.length();
+        final int start = startIndex(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, cipher)) {
+                return;
+            }
+        }
+    }
+
+    private Cipher poll() {
+        final int size = slots.length();
+        final int start = startIndex(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            Cipher cipher = slots.get(index);
+            if (cipher != null && slots.compareAndSet(index, cipher, null)) {
+                return cipher;
+            }
+        }
+        return null;
+    }
+
+    /** Spreads threads across slots to reduce CAS contention. */
+    private static int startIndex(int size) {
+        return (int) (Thread.currentThread().getId() % size);
+    }
+}
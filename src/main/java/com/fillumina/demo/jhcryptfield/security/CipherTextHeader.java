@@ -0,0 +1,89 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The header prepended to the IV and the cipher text:
+ * <pre>
+ * | version (1 byte) | algorithm (1 byte) | key id (1 byte) | IV | cipher text + tag |
+ * </pre>
+ * The header is authenticated as additional data so it cannot be tampered with.
+ * Values encrypted before the header was introduced are just {@code IV | cipher text + tag}
+ * and can only be told apart by failing to decrypt them as headed values.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class CipherTextHeader {
+
+    public static final int LENGTH = 3;
+
+    public static final byte VERSION_1 = 1;
+
+    public static final byte ALGORITHM_AES_GCM = 1;
+
+    /**
+     * Deterministic encryption, the IV is replaced by the synthetic IV (see {@link AesSiv}).
+     */
+    public static final byte ALGORITHM_AES_SIV = 2;
+
+    public static final int MAX_KEY_ID = 255;
+
+    private static final int MIN_CIPHER_TEXT_LENGTH = LENGTH + EncryptionUtils.IV_LENGTH_BYTE + EncryptionUtils.TAG_LENGTH_BIT / 8;
+
+    private static final int MIN_SIV_CIPHER_TEXT_LENGTH = LENGTH + AesSiv.SIV_LENGTH_BYTE;
+
+    private CipherTextHeader() {}
+
+    public static byte[] create(int keyId) {
+        return create(keyId, ALGORITHM_AES_GCM);
+    }
+
+    public static byte[] create(int keyId, byte algorithm) {
+        if (keyId < 0 || keyId > MAX_KEY_ID) {
+            throw new IllegalArgumentException("Invalid key id: " + keyId);
+        }
+        return new byte[] { VERSION_1, algorithm, (byte) keyId };
+    }
+
+    /**
+     * @return the key id if the given cipher text looks like it starts with a
+     * header, {@code -1} otherwise. Legacy values have a random first byte so
+     * there is a small chance they are mistaken for headed values.
+     */
+    public static int keyIdOf(byte[] cipherText) {
+        if (cipherText.length < MIN_CIPHER_TEXT_LENGTH || cipherText[0] != VERSION_1 || cipherText[1] != ALGORITHM_AES_GCM) {
+            return -1;
+        }
+        return cipherText[2] & 0xFF;
+    }
+
+    /**
+     * @return the key id if the given cipher text starts with a header of the
+     * given algorithm, {@code -1} otherwise.
+     */
+    public static int keyIdOf(byte[] cipherText, byte algorithm) {
+        if (algorithm == ALGORITHM_AES_GCM) {
+            return keyIdOf(cipherText);
+        }
+        if (cipherText.length < MIN_SIV_CIPHER_TEXT_LENGTH || cipherText[0] != VERSION_1 || cipherText[1] != algorithm) {
+            return -1;
+        }
+        return cipherText[2] & 0xFF;
+    }
+
+    /**
+     * Like {@link #keyIdOf(byte[])} for the remaining bytes of the buffer,
+     * whose position is not changed.
+     */
+    public static int keyIdOf(ByteBuffer cipherText) {
+        int position = cipherText.position();
+        if (
+            cipherText.remaining() < MIN_CIPHER_TEXT_LENGTH ||
+            cipherText.get(position) != VERSION_1 ||
+            cipherText.get(position + 1) != ALGORITHM_AES_GCM
+        ) {
+            return -1;
+        }
+        return cipherText.get(position + 2) & 0xFF;
+    }
+}
@@ -0,0 +1,220 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKey;
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * A bounded cache of the plain texts of the recently decrypted values. The
+ * second level cache only keeps cipher texts so every hydration of a cached
+ * entity decrypts its values again: with this cache a frequently read value
+ * is decrypted once per time to live.
+ * <p>
+ * Entries are keyed by the type of the value and a digest of its cipher text:
+ * a new cipher text is produced (with a fresh IV) every time a value changes
+ * or is re-encrypted, so a stale plain text is never returned and the old
+ * entries just expire. Plain texts are cached instead of objects because
+ * decoded objects are mutable and given to the callers.
+ * <p>
+ * The cached plain texts can be encrypted with an ephemeral key, generated at
+ * startup and never stored, so that they don't show up in a heap dump. This
+ * halves the saving (AES-GCM is still applied once) but skips the key ring
+ * lookup and the derivation of the deterministic keys.
+ * <p>
+ * Like {@link BlindIndex} JPA entities access the cache through
+ * {@link #getInstance()}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+@Component
+public class DecryptedValueCache {
+
+    public static final String METRIC_NAME = "encryption.decrypted.cache.gets";
+
+    private static final String CACHE_NAME = "decrypted-values";
+
+    private static final String DIGEST_ALGO = "SHA-256";
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGO);
+        } catch (NoSuchAlgorithmException ex) {
+            // every JVM must support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    // used until the application context is started, doesn't cache anything
+    private static final DecryptedValueCache DISABLED = new DecryptedValueCache();
+
+    private static volatile DecryptedValueCache instance = DISABLED;
+
+    private final CacheManager cacheManager;
+    private final Cache<Key, byte[]> cache;
+    private final SecretKey ephemeralKey;
+    private final NonceGenerator nonceGenerator;
+    private final Counter hits;
+    private final Counter misses;
+
+    private DecryptedValueCache() {
+        this.cacheManager = null;
+        this.cache = null;
+        this.ephemeralKey = null;
+        this.nonceGenerator = null;
+        this.hits = null;
+        this.misses = null;
+    }
+
+    // Spring would otherwise instantiate the bean with the private no-args constructor
+    @Autowired
+    public DecryptedValueCache(ApplicationProperties applicationProperties) {
+        this(applicationProperties.getFieldEncryption().getDecryptedCache());
+        instance = isEnabled() ? this : DISABLED;
+    }
+
+    DecryptedValueCache(ApplicationProperties.DecryptedCache config) {
+        if (config.isEnabled() && config.getMaxEntries() > 0 && config.getTimeToLiveSeconds() > 0) {
+            this.cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+            this.cache =
+                cacheManager.createCache(
+                    CACHE_NAME,
+                    CacheConfigurationBuilder
+                        .newCacheConfigurationBuilder(Key.class, byte[].class, ResourcePoolsBuilder.heap(config.getMaxEntries()))
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(config.getTimeToLiveSeconds())))
+                        .build()
+                );
+            this.ephemeralKey = config.isEncrypted() ? EncryptionUtils.getAESKey(EncryptionUtils.AES_KEY_BIT) : null;
+            this.nonceGenerator = config.isEncrypted() ? NonceGenerator.forKey(CACHE_NAME) : null;
+            this.hits = counter("hit");
+            this.misses = counter("miss");
+        } else {
+            this.cacheManager = null;
+            this.cache = null;
+            this.ephemeralKey = null;
+            this.nonceGenerator = null;
+            this.hits = null;
+            this.misses = null;
+        }
+    }
+
+    private static Counter counter(String result) {
+        return Counter
+            .builder(METRIC_NAME)
+            .description("Lookups of the plain texts of decrypted values")
+            .tag("result", result)
+            .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * @return the cache created by Spring, a disabled one if the application
+     * context is not started yet or the cache is not enabled.
+     */
+    public static DecryptedValueCache getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Decrypts into the given buffer, replacing its content, using the cached
+     * plain text if any.
+     *
+     * @param type the type of the value, values of different types are never mixed.
+     * @param engine decrypts the values not in the cache.
+     */
+    public void decrypt(Class<?> type, byte[] cipherText, CipherEngine engine, PlainTextBuffer out) throws EncryptionException {
+        if (cache == null) {
+            engine.decrypt(cipherText, out);
+            return;
+        }
+        Key key = new Key(type, cipherText);
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            read(cached, out);
+            return;
+        }
+        misses.increment();
+        engine.decrypt(cipherText, out);
+        cache.put(key, write(out));
+    }
+
+    /**
+     * Removes all the cached plain texts.
+     */
+    public void clear() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cacheManager != null) {
+            cacheManager.close();
+        }
+    }
+
+    private byte[] write(PlainTextBuffer plainText) {
+        if (ephemeralKey == null) {
+            return Arrays.copyOf(plainText.array(), plainText.size());
+        }
+        return EncryptionUtils.encryptWithHeader(plainText.array(), 0, plainText.size(), ephemeralKey, new byte[0], nonceGenerator.next());
+    }
+
+    private void read(byte[] cached, PlainTextBuffer out) {
+        if (ephemeralKey == null) {
+            System.arraycopy(cached, 0, out.ensureCapacity(cached.length), 0, cached.length);
+            out.setSize(cached.length);
+        } else {
+            EncryptionUtils.decryptWithHeader(cached, 0, ephemeralKey, out);
+        }
+    }
+
+    private static final class Key {
+
+        private final Class<?> type;
+        private final byte[] digest;
+        private final int hashCode;
+
+        Key(Class<?> type, byte[] cipherText) {
+            this.type = type;
+            this.digest = DIGEST.get().digest(cipherText);
+            this.hashCode = 31 * type.hashCode() + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return type == other.type && Arrays.equals(digest, other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
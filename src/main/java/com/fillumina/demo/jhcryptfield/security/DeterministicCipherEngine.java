@@ -0,0 +1,85 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.SecretKey;
+
+/**
+ * AES-SIV with the key ring (see {@link AesSiv} and {@link EncryptionKeyRegistry}):
+ * values are encrypted deterministically with the active key, so an encrypted
+ * column can be searched by equality (and indexed) by encrypting the searched
+ * value. Select it for a field with {@code @Encrypted(engine = DeterministicCipherEngine.class)}.
+ * <p>
+ * Equal values have equal cipher texts, which reveals which rows share a value
+ * (and so its frequency), and the cipher text is as long as the plain text.
+ * Use it only for the fields that must be searched and have few repeated values.
+ * Values stored with other keys are found by searching the encryptions with all
+ * the keys ({@link #encryptWithAllKeys(byte[], int, int)}) until they are
+ * re-encrypted ({@link #reEncrypt(byte[])}).
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class DeterministicCipherEngine implements CipherEngine {
+
+    // derived once per key, there are only a few keys
+    private static final Map<SecretKey, AesSiv.Key> SIV_KEYS = new ConcurrentHashMap<>();
+
+    private static AesSiv.Key sivKey(EncryptionKeyRegistry keyRegistry, int keyId) throws EncryptionException {
+        return SIV_KEYS.computeIfAbsent(keyRegistry.getKey(keyId), AesSiv.Key::derive);
+    }
+
+    /**
+     * @return header, SIV and cipher text encrypted with the active key.
+     */
+    @Override
+    public byte[] encrypt(byte[] plainText, int offset, int length) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = EncryptionKeyRegistry.getInstance();
+        int keyId = keyRegistry.getActiveKeyId();
+        byte[] header = CipherTextHeader.create(keyId, CipherTextHeader.ALGORITHM_AES_SIV);
+        return EncryptionUtils.encryptDeterministic(plainText, offset, length, sivKey(keyRegistry, keyId), header);
+    }
+
+    /**
+     * @return the encryptions with every key of the ring, the active one first.
+     */
+    public List<byte[]> encryptWithAllKeys(byte[] plainText, int offset, int length) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = EncryptionKeyRegistry.getInstance();
+        List<byte[]> cipherTexts = new ArrayList<>();
+        cipherTexts.add(encrypt(plainText, offset, length));
+        for (int keyId : keyRegistry.getKeyIds()) {
+            if (keyId != keyRegistry.getActiveKeyId()) {
+                byte[] header = CipherTextHeader.create(keyId, CipherTextHeader.ALGORITHM_AES_SIV);
+                cipherTexts.add(EncryptionUtils.encryptDeterministic(plainText, offset, length, sivKey(keyRegistry, keyId), header));
+            }
+        }
+        return cipherTexts;
+    }
+
+    /**
+     * @return the value re-encrypted with the active key or {@code null} if it
+     * is already encrypted with it.
+     */
+    public byte[] reEncrypt(byte[] cipherText) throws EncryptionException {
+        int keyId = CipherTextHeader.keyIdOf(cipherText, CipherTextHeader.ALGORITHM_AES_SIV);
+        if (keyId == EncryptionKeyRegistry.getInstance().getActiveKeyId()) {
+            return null;
+        }
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            decrypt(cipherText, buffer);
+            return encrypt(buffer.array(), 0, buffer.size());
+        }
+    }
+
+    @Override
+    public void decrypt(byte[] cipherText, PlainTextBuffer out) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = EncryptionKeyRegistry.getInstance();
+        int keyId = CipherTextHeader.keyIdOf(cipherText, CipherTextHeader.ALGORITHM_AES_SIV);
+        if (keyId == -1) {
+            throw new EncryptionException("Not a deterministic cipher text");
+        }
+        EncryptionUtils.decryptDeterministic(cipherText, CipherTextHeader.LENGTH, sivKey(keyRegistry, keyId), out);
+    }
+}
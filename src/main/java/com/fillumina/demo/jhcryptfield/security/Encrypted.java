@@ -0,0 +1,36 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity field of type {@link EncryptedValue} to be stored encrypted
+ * in a binary column, i.e.:
+ * <pre>
+ * &#64;Encrypted
+ * &#64;Column(name = "address_raw")
+ * private EncryptedValue&lt;CustomerAddress&gt; address;
+ * </pre>
+ * The mapping is provided by {@link EncryptedType}, registered as the default
+ * type of {@link EncryptedValue} in the domain package. Each field has its own
+ * codec and engine, also when other fields have the same value type.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Encrypted {
+    /**
+     * How the value is converted to plain text.
+     */
+    Class<? extends PayloadCodec> codec() default BinaryPayloadCodec.class;
+
+    /**
+     * How the plain text is encrypted.
+     */
+    Class<? extends CipherEngine> engine() default KeyRingCipherEngine.class;
+}
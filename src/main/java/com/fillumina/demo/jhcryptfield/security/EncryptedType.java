@@ -0,0 +1,156 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.IdSettable;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+import javax.persistence.Id;
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.DynamicParameterizedType;
+import org.hibernate.usertype.UserType;
+
+/**
+ * Maps an {@link EncryptedValue} field to a binary column containing its cipher text.
+ * <p>
+ * The value type is taken from the generic type of the field and the codec and
+ * engine from its {@link Encrypted} annotation (defaults are used without it),
+ * see {@link EncryptionHelper#forField(Class, String)}.
+ * The second level cache stores the cipher text only.
+ * <p>
+ * Values implementing {@link IdSettable} are given the id of
+ * the owner entity when decrypted (projections have no owner).
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class EncryptedType implements UserType, DynamicParameterizedType {
+
+    public static final String NAME = "encrypted";
+
+    private static final int[] SQL_TYPES = { Types.VARBINARY };
+
+    private EncryptionHelper<?> helper;
+
+    // the id of the entity, only if the values are IdSettable
+    private Field idField;
+
+    @Override
+    public void setParameterValues(Properties parameters) {
+        String entityName = parameters.getProperty(ENTITY);
+        String propertyName = parameters.getProperty(PROPERTY);
+        try {
+            Class<?> entityClass = Class.forName(entityName, false, EncryptedType.class.getClassLoader());
+            helper = EncryptionHelper.forField(entityClass, propertyName);
+            idField = IdSettable.class.isAssignableFrom(helper.getObjectClass()) ? idField(entityClass) : null;
+        } catch (ClassNotFoundException | IllegalArgumentException ex) {
+            throw new MappingException("Cannot map " + entityName + "." + propertyName, ex);
+        }
+    }
+
+    private static Field idField(Class<?> entityClass) {
+        for (Class<?> c = entityClass; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class) && field.getType() == Long.class) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The owner is instantiated with its id before its properties are loaded,
+     * either from the result set or from the second level cache.
+     */
+    private EncryptedValue<?> loaded(byte[] cipherText, Object owner) {
+        helper.loaded();
+        return EncryptedValue.ofCipherText(cipherText, helper, ownerId(owner));
+    }
+
+    private Long ownerId(Object owner) {
+        if (idField == null || !idField.getDeclaringClass().isInstance(owner)) {
+            return null;
+        }
+        try {
+            return (Long) idField.get(owner);
+        } catch (IllegalAccessException ex) {
+            throw new HibernateException("Cannot read the id of " + owner.getClass().getName(), ex);
+        }
+    }
+
+    @Override
+    public int[] sqlTypes() {
+        return SQL_TYPES;
+    }
+
+    @Override
+    public Class<?> returnedClass() {
+        return EncryptedValue.class;
+    }
+
+    /**
+     * Called by the dirty check with the loaded value first: if the content of
+     * the current value didn't change it takes the loaded cipher text.
+     */
+    @Override
+    public boolean equals(Object x, Object y) {
+        if (x == y) {
+            return true;
+        }
+        if (x == null || y == null) {
+            return false;
+        }
+        return ((EncryptedValue<?>) y).hasSameContent((EncryptedValue<?>) x);
+    }
+
+    @Override
+    public int hashCode(Object x) {
+        return ((EncryptedValue<?>) x).getType().hashCode();
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner) throws SQLException {
+        byte[] cipherText = rs.getBytes(names[0]);
+        return cipherText == null ? null : loaded(cipherText, owner);
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session) throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.VARBINARY);
+        } else {
+            st.setBytes(index, ((EncryptedValue<?>) value).getCipherText());
+        }
+    }
+
+    @Override
+    public Object deepCopy(Object value) {
+        return value;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(Object value) {
+        return value == null ? null : ((EncryptedValue<?>) value).getCipherText();
+    }
+
+    @Override
+    public Object assemble(Serializable cached, Object owner) {
+        return cached == null ? null : loaded((byte[]) cached, owner);
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) {
+        return original;
+    }
+}
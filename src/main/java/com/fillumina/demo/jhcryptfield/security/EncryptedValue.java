@@ -0,0 +1,242 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Holds the value of an {@link Encrypted} field.
+ * <p>
+ * A value loaded from the database keeps only its cipher text until
+ * {@link #get()} is called for the first time, then the decrypted value is
+ * kept along with it: entities that are loaded but never read don't pay for the
+ * decryption. A value created by {@link #of(Object)} is only encrypted when the
+ * cipher text is needed (usually when the entity is flushed) and if its content
+ * is the same as the one already stored the old cipher text is kept, so no
+ * useless update is issued.
+ * <p>
+ * A holder carries the codec and the engine of its field: holders assigned to
+ * a field with a non default configuration must be created with the helper of
+ * that field ({@link EncryptionHelper#forField(Class, String)}).
+ * <p>
+ * Holders are immutable from the point of view of the persistence context:
+ * modifications of the decrypted value are not detected, a new holder
+ * must be assigned to the field to have them stored.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class EncryptedValue<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<T> type;
+
+    private final Class<? extends PayloadCodec> codecClass;
+
+    private final Class<? extends CipherEngine> engineClass;
+
+    // given to the decrypted value if it's an IdSettable, the id of the owner
+    private final Long id;
+
+    private volatile byte[] cipherText;
+
+    // the plain text of a value not encrypted yet
+    private transient byte[] plainText;
+
+    private transient volatile T value;
+
+    // the digest of the plain text, null if not known yet
+    private transient byte[] digest;
+
+    private transient EncryptionHelper<T> helper;
+
+    private EncryptedValue(EncryptionHelper<T> helper, Long id) {
+        this.type = helper.getObjectClass();
+        this.codecClass = helper.getCodec().getClass();
+        this.engineClass = helper.getEngine().getClass();
+        this.id = id;
+        this.helper = helper;
+    }
+
+    /**
+     * @return a holder of the given value encrypted with the default codec and
+     * engine, {@code null} if the value is {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EncryptedValue<T> of(T value) {
+        if (value == null) {
+            return null;
+        }
+        return of(value, EncryptionHelper.forType((Class<T>) value.getClass()));
+    }
+
+    /**
+     * @return a holder of the given value encrypted by the given helper,
+     * {@code null} if the value is {@code null}.
+     */
+    public static <T> EncryptedValue<T> of(T value, EncryptionHelper<T> helper) {
+        if (value == null) {
+            return null;
+        }
+        EncryptedValue<T> encryptedValue = new EncryptedValue<>(helper, null);
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            encryptedValue.helper().toPlainText(value, buffer);
+            encryptedValue.digest = EncryptionHelper.digest(buffer.array(), 0, buffer.size());
+            encryptedValue.plainText = buffer.toByteArray();
+        }
+        encryptedValue.value = value;
+        return encryptedValue;
+    }
+
+    /**
+     * @return a holder of the given cipher text, produced with the default
+     * codec and engine, {@code null} if the cipher text is {@code null}.
+     */
+    public static <T> EncryptedValue<T> ofCipherText(byte[] cipherText, Class<T> type) {
+        return ofCipherText(cipherText, EncryptionHelper.forType(type));
+    }
+
+    /**
+     * @return a holder of the given cipher text, produced by the given helper,
+     * {@code null} if the cipher text is {@code null}.
+     */
+    public static <T> EncryptedValue<T> ofCipherText(byte[] cipherText, EncryptionHelper<T> helper) {
+        return ofCipherText(cipherText, helper, null);
+    }
+
+    /**
+     * Like {@link #ofCipherText(byte[], EncryptionHelper)}, the value is
+     * given the id when decrypted if it's an {@link EncryptionHelper.IdSettable}.
+     */
+    public static <T> EncryptedValue<T> ofCipherText(byte[] cipherText, EncryptionHelper<T> helper, Long id) {
+        if (cipherText == null) {
+            return null;
+        }
+        EncryptedValue<T> encryptedValue = new EncryptedValue<>(helper, id);
+        encryptedValue.cipherText = cipherText;
+        return encryptedValue;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the decrypted value or {@code null} if it cannot be decrypted.
+     */
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = decrypt();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} if the value is available without decrypting it.
+     */
+    boolean isDecrypted() {
+        return value != null;
+    }
+
+    /**
+     * @return the cipher text, encrypting the value if not done yet.
+     */
+    public synchronized byte[] getCipherText() {
+        if (cipherText == null) {
+            cipherText = helper().encryptBytes(plainText);
+            Arrays.fill(plainText, (byte) 0);
+            plainText = null;
+        }
+        return cipherText;
+    }
+
+    /**
+     * Compares the plain texts without decrypting if the cipher texts are the
+     * same. If the contents are equal this holder takes the cipher text of
+     * the other one so an unchanged value is never re-encrypted.
+     *
+     * @return {@code true} if the two holders have the same content, values
+     * that cannot be decrypted or encrypted differently are always considered
+     * different.
+     */
+    public boolean hasSameContent(EncryptedValue<?> other) {
+        if (type != other.type || codecClass != other.codecClass || engineClass != other.engineClass) {
+            return false;
+        }
+        byte[] otherCipherText = other.cipherText;
+        byte[] thisCipherText = cipherText;
+        if (thisCipherText != null && Arrays.equals(thisCipherText, otherCipherText)) {
+            return true;
+        }
+        // never hold both locks
+        byte[] otherDigest = other.getDigest();
+        byte[] thisDigest = getDigest();
+        if (otherDigest == null || thisDigest == null || !MessageDigest.isEqual(thisDigest, otherDigest)) {
+            return false;
+        }
+        if (otherCipherText != null) {
+            synchronized (this) {
+                cipherText = otherCipherText;
+                if (plainText != null) {
+                    Arrays.fill(plainText, (byte) 0);
+                    plainText = null;
+                }
+            }
+        }
+        return true;
+    }
+
+    private synchronized byte[] getDigest() {
+        if (digest == null && value == null) {
+            decrypt();
+        }
+        return digest;
+    }
+
+    // must hold the lock
+    private T decrypt() {
+        if (cipherText == null) {
+            return null;
+        }
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            EncryptionHelper<T> encryptionHelper = helper();
+            encryptionHelper.decryptPlainText(cipherText, buffer);
+            digest = EncryptionHelper.digest(buffer.array(), 0, buffer.size());
+            T result = encryptionHelper.fromPlainText(id, buffer.array(), 0, buffer.size());
+            value = result;
+            return result;
+        } catch (EncryptionException ex) {
+            return null;
+        }
+    }
+
+    private EncryptionHelper<T> helper() {
+        EncryptionHelper<T> result = helper;
+        if (result == null) {
+            // after deserialization
+            result = EncryptionHelper.of(type, codecClass, engineClass);
+            helper = result;
+        }
+        return result;
+    }
+
+    // only the cipher text is serialized
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getCipherText();
+        out.defaultWriteObject();
+    }
+
+    @Override
+    public String toString() {
+        return "EncryptedValue{" + type.getSimpleName() + "}";
+    }
+}
@@ -2,20 +2,52 @@ package com.fillumina.demo.jhcryptfield.security;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
-import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.IdSettable;
 import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
-import javax.crypto.SecretKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
+ * Encrypts objects of a given type by encoding them with a {@link PayloadCodec}
+ * and encrypting the result with a {@link CipherEngine}. By default objects are
+ * encoded in the compact binary format (see {@link BinaryPayloadCodec}) and
+ * encrypted with the key ring (see {@link KeyRingCipherEngine}).
+ * <p>
+ * There is a single helper per type, codec and engine: the one of an
+ * {@link Encrypted} field is available through {@link #forField(Class, String)},
+ * the default one of a type through {@link #forType(Class)}.
  *
  * @author Francesco Illuminati <fillumina@gmail.com>
  */
-public class EncryptionHelper<T extends IdSettable> {
+public class EncryptionHelper<T> {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String DIGEST_ALGO = "HmacSHA256";
+
+    // digests are only compared within the process so the key can be ephemeral
+    private static final SecretKeySpec DIGEST_KEY = new SecretKeySpec(EncryptionUtils.getRandomNonce(32), DIGEST_ALGO);
+
+    private static final ThreadLocal<Mac> DIGEST_MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance(DIGEST_ALGO);
+            mac.init(DIGEST_KEY);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptionException(ex);
+        }
+    });
+
+    // by type, codec class and engine class
+    private static final Map<List<Class<?>>, EncryptionHelper<?>> HELPERS = new ConcurrentHashMap<>();
 
     public static interface IdSettable {
         void setId(Long id);
@@ -27,63 +59,248 @@ public class EncryptionHelper<T extends IdSettable> {
     }
 
     private final Class<T> objectClass;
-    private SecretKey secretKey;
+    private final PayloadCodec codec;
+    private final CipherEngine engine;
+
+    private final Counter loads;
+    private final Counter decryptions;
 
     public EncryptionHelper(Class<T> objectClass) {
+        this(objectClass, new BinaryPayloadCodec(), new KeyRingCipherEngine());
+    }
+
+    public EncryptionHelper(Class<T> objectClass, PayloadCodec codec, CipherEngine engine) {
         this.objectClass = objectClass;
+        this.codec = codec;
+        this.engine = engine;
+        String type = objectClass.getSimpleName();
+        this.loads =
+            Counter
+                .builder("encryption.field.loads")
+                .description("Encrypted values loaded from the database")
+                .tag("type", type)
+                .register(Metrics.globalRegistry);
+        this.decryptions =
+            Counter
+                .builder("encryption.field.decryptions")
+                .description("Encrypted values actually decrypted, or read from the decrypted value cache")
+                .tag("type", type)
+                .register(Metrics.globalRegistry);
+        Gauge
+            .builder("encryption.field.decryptions.skipped", this, EncryptionHelper::getSkippedDecryptions)
+            .description("Loaded encrypted values never decrypted (approximated)")
+            .tag("type", type)
+            .register(Metrics.globalRegistry);
     }
 
     /**
-     * Lazy loading to allow properties to be loaded
+     * @return the helper for the given type with the default codec and engine,
+     * the same of an {@link Encrypted} field without attributes.
      */
-    private SecretKey getSecretKey() {
-        if (this.secretKey == null) {
-            EncryptionSecret secret = ApplicationProperties.FIELD_ENCRYPTION_SECRET;
-            final char[] password = secret.getPassword().toCharArray();
-            final byte[] salt = secret.getSalt().getBytes();
-            this.secretKey = EncryptionUtils.getAESKeyFromPassword(password, salt);
-        }
-        return secretKey;
+    public static <T> EncryptionHelper<T> forType(Class<T> objectClass) {
+        return of(objectClass, BinaryPayloadCodec.class, KeyRingCipherEngine.class);
     }
 
-    public T decryptObject(Long id, T actualObject, String encryptedJson) {
-        if (actualObject == null && encryptedJson != null && !encryptedJson.isBlank()) {
+    /**
+     * @return the helper for the given type, codec and engine.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EncryptionHelper<T> of(
+        Class<T> objectClass,
+        Class<? extends PayloadCodec> codecClass,
+        Class<? extends CipherEngine> engineClass
+    ) {
+        return (EncryptionHelper<T>) HELPERS.computeIfAbsent(
+            List.of(objectClass, codecClass, engineClass),
+            k -> new EncryptionHelper<>(objectClass, instantiate(codecClass), instantiate(engineClass))
+        );
+    }
+
+    /**
+     * @return the helper configured by the {@link Encrypted} annotation of the
+     * given {@link EncryptedValue} field, the default one without annotation.
+     * @throws IllegalArgumentException if the field doesn't exist or its value
+     * type cannot be determined.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EncryptionHelper<T> forField(Class<?> entityClass, String fieldName) {
+        for (Class<?> c = entityClass; c != null; c = c.getSuperclass()) {
+            Field field;
             try {
-                String decryptedJson = decryptHexString(encryptedJson);
-                actualObject = OBJECT_MAPPER.readValue(decryptedJson, objectClass);
-                actualObject.setId(id);
-            } catch (JsonProcessingException | EncryptionException ex) {
+                field = c.getDeclaredField(fieldName);
+            } catch (NoSuchFieldException ex) {
+                // look in the superclass
+                continue;
+            }
+            Type genericType = field.getGenericType();
+            if (genericType instanceof ParameterizedType) {
+                Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+                if (argument instanceof Class) {
+                    Class<T> valueType = (Class<T>) argument;
+                    Encrypted encrypted = field.getAnnotation(Encrypted.class);
+                    return encrypted == null ? forType(valueType) : of(valueType, encrypted.codec(), encrypted.engine());
+                }
+            }
+            break;
+        }
+        throw new IllegalArgumentException("Cannot find the value type of " + entityClass.getName() + "." + fieldName);
+    }
+
+    private static <C> C instantiate(Class<C> clazz) {
+        try {
+            return clazz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("Cannot instantiate " + clazz.getName(), ex);
+        }
+    }
+
+    public Class<T> getObjectClass() {
+        return objectClass;
+    }
+
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
+    public CipherEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * To be called when an encrypted value is loaded but not decrypted yet.
+     */
+    public void loaded() {
+        loads.increment();
+    }
+
+    private double getSkippedDecryptions() {
+        return Math.max(0, loads.count() - decryptions.count());
+    }
+
+    public T decryptObject(Long id, T actualObject, byte[] encryptedJson) {
+        if (actualObject == null && encryptedJson != null && encryptedJson.length > 0) {
+            try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+                decryptPlainText(encryptedJson, buffer);
+                actualObject = fromPlainText(id, buffer.array(), 0, buffer.size());
+            } catch (EncryptionException ex) {
                 actualObject = null;
             }
         }
         return actualObject;
     }
 
-    public String encryptObject(T actualObject) {
+    public byte[] encryptObject(T actualObject) {
         if (actualObject == null) {
             return null;
         }
-        try {
-            String plainJson = OBJECT_MAPPER.writeValueAsString(actualObject);
-            String encryptedJson = encryptToHexString(plainJson);
-            return encryptedJson;
-        } catch (JsonProcessingException | EncryptionException ex) {
-            throw new RuntimeException("Customer.setAddress()", ex);
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            codec.encode(actualObject, buffer);
+            return engine.encrypt(buffer.array(), 0, buffer.size());
         }
     }
 
+    /**
+     * @return the plain text of the given object, without its id.
+     */
+    public byte[] toPlainText(T actualObject) throws EncryptionException {
+        return codec.encode(actualObject);
+    }
+
+    /**
+     * Appends the plain text of the given object, without its id, to the buffer.
+     */
+    public void toPlainText(T actualObject, PlainTextBuffer out) throws EncryptionException {
+        codec.encode(actualObject, out);
+    }
+
+    public T fromPlainText(Long id, byte[] plainText) throws EncryptionException {
+        return fromPlainText(id, plainText, 0, plainText.length);
+    }
+
+    public T fromPlainText(Long id, byte[] plainText, int offset, int length) throws EncryptionException {
+        T actualObject = codec.decode(plainText, offset, length, objectClass);
+        if (id != null && actualObject instanceof IdSettable) {
+            ((IdSettable) actualObject).setId(id);
+        }
+        return actualObject;
+    }
+
+    /**
+     * Like {@link #decryptBytes(byte[])} but counted in the decryption metrics.
+     */
+    public byte[] decryptPlainText(byte[] cipherText) throws EncryptionException {
+        decryptions.increment();
+        return decryptBytes(cipherText);
+    }
+
+    /**
+     * Decrypts into the given buffer, replacing its content, counted in the
+     * decryption metrics. The plain text comes from the
+     * {@link DecryptedValueCache} if it has been decrypted recently.
+     */
+    public void decryptPlainText(byte[] cipherText, PlainTextBuffer out) throws EncryptionException {
+        decryptions.increment();
+        DecryptedValueCache.getInstance().decrypt(objectClass, cipherText, engine, out);
+    }
+
+    /**
+     * @return a keyed digest of the given plain text, to detect changes without
+     * comparing (or keeping around) plain texts. Digests are only valid within
+     * the current process.
+     */
+    public static byte[] digest(byte[] plainText) {
+        return digest(plainText, 0, plainText.length);
+    }
+
+    public static byte[] digest(byte[] plainText, int offset, int length) {
+        Mac mac = DIGEST_MAC.get();
+        mac.update(plainText, offset, length);
+        return mac.doFinal();
+    }
+
+    public byte[] encrypt(String text) {
+        return encryptBytes(text.getBytes(UTF_8));
+    }
+
+    public String decrypt(byte[] cypher) {
+        return new String(decryptBytes(cypher), UTF_8);
+    }
+
+    /**
+     * @return the value encrypted with every key of the ring, to search a
+     * deterministically encrypted column whichever key its rows are stored with.
+     * @throws IllegalStateException if the engine is not a {@link DeterministicCipherEngine}.
+     */
+    public List<EncryptedValue<T>> encryptWithAllKeys(T actualObject) throws EncryptionException {
+        if (!(engine instanceof DeterministicCipherEngine)) {
+            throw new IllegalStateException(objectClass.getName() + " is not encrypted deterministically");
+        }
+        List<EncryptedValue<T>> values = new ArrayList<>();
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            toPlainText(actualObject, buffer);
+            for (byte[] cipherText : ((DeterministicCipherEngine) engine).encryptWithAllKeys(buffer.array(), 0, buffer.size())) {
+                values.add(EncryptedValue.ofCipherText(cipherText, this));
+            }
+        }
+        return values;
+    }
+
+    public byte[] encryptBytes(byte[] plainText) {
+        return engine.encrypt(plainText);
+    }
+
+    public byte[] decryptBytes(byte[] cypher) {
+        return engine.decrypt(cypher);
+    }
+
     public String encryptToHexString(String text) {
-        byte[] iv = EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE);
-        byte[] bytes = text.getBytes(UTF_8);
-        byte[] encryptedText = EncryptionUtils.encryptWithPrefixIV(bytes, getSecretKey(), iv);
-        return EncryptionUtils.hex(encryptedText);
+        return EncryptionUtils.hex(encrypt(text));
     }
 
     public String decryptHexString(String cypher) {
         try {
             byte[] encryptedBytes = EncryptionUtils.decodeHexString(cypher);
-            String decryptedText = EncryptionUtils.decryptWithPrefixIV(encryptedBytes, getSecretKey());
-            return decryptedText;
+            return decrypt(encryptedBytes);
         } catch (IllegalArgumentException ex) {
             throw new EncryptionException(ex);
         }
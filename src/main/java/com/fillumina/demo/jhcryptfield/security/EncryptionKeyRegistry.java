@@ -0,0 +1,149 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties.FieldEncryption;
+import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.EncryptionSecret;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.crypto.SecretKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Derives all the configured field encryption keys once, at startup.
+ * <p>
+ * Keys are identified by a number stored in the header of each cipher text
+ * (see {@link CipherTextHeader}). The original
+ * {@code application.field-encryption-secret} is the key {@value #LEGACY_KEY_ID},
+ * other keys can be added in {@code application.field-encryption.keys} and new
+ * values are always encrypted with {@code application.field-encryption.active-key}.
+ * <p>
+ * The PBKDF2 derivations are expensive so they are started in parallel on the
+ * task executor as soon as the bean is created. A request needing a key not yet
+ * derived waits for it instead of deriving it again.
+ * <p>
+ * JPA entities are not managed by Spring so they access the registry through
+ * {@link #getInstance()}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+@Component
+public class EncryptionKeyRegistry {
+
+    public static final int LEGACY_KEY_ID = 0;
+
+    private static volatile EncryptionKeyRegistry instance;
+
+    private final Logger log = LoggerFactory.getLogger(EncryptionKeyRegistry.class);
+
+    private final Map<Integer, CompletableFuture<SecretKey>> keys;
+
+    private final int activeKeyId;
+
+    public EncryptionKeyRegistry(ApplicationProperties applicationProperties, @Qualifier("taskExecutor") Executor executor) {
+        FieldEncryption fieldEncryption = applicationProperties.getFieldEncryption();
+        Map<Integer, CompletableFuture<SecretKey>> map = new HashMap<>();
+        EncryptionSecret legacySecret = applicationProperties.getFieldEncryptionSecret();
+        if (legacySecret.getPassword() != null) {
+            map.put(LEGACY_KEY_ID, derive(legacySecret, executor));
+        }
+        fieldEncryption
+            .getKeys()
+            .forEach((keyId, secret) -> {
+                if (keyId <= LEGACY_KEY_ID || keyId > CipherTextHeader.MAX_KEY_ID) {
+                    throw new IllegalArgumentException("Invalid field encryption key id: " + keyId);
+                }
+                map.put(keyId, derive(secret, executor));
+            });
+        this.activeKeyId = fieldEncryption.getActiveKey();
+        if (!map.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Active field encryption key " + activeKeyId + " not configured");
+        }
+        this.keys = Map.copyOf(map);
+        log.info("Field encryption keys {}, active key {}", keys.keySet(), activeKeyId);
+        instance = this;
+    }
+
+    /**
+     * @return the registry created by Spring.
+     * @throws IllegalStateException if the application context is not started yet.
+     */
+    public static EncryptionKeyRegistry getInstance() {
+        EncryptionKeyRegistry registry = instance;
+        if (registry == null) {
+            throw new IllegalStateException("Encryption keys not configured yet");
+        }
+        return registry;
+    }
+
+    private CompletableFuture<SecretKey> derive(EncryptionSecret secret, Executor executor) {
+        if (secret.getPassword() == null || secret.getSalt() == null) {
+            throw new IllegalArgumentException("Field encryption secret without password or salt");
+        }
+        final char[] password = secret.getPassword().toCharArray();
+        final byte[] salt = secret.getSalt().getBytes(StandardCharsets.UTF_8);
+        return CompletableFuture.supplyAsync(
+            () -> {
+                long start = System.currentTimeMillis();
+                SecretKey key = EncryptionUtils.getAESKeyFromPassword(password, salt);
+                log.debug("Derived field encryption key in {} ms", System.currentTimeMillis() - start);
+                return key;
+            },
+            executor
+        );
+    }
+
+    public Set<Integer> getKeyIds() {
+        return keys.keySet();
+    }
+
+    /**
+     * @return the id of the key to use for encryption.
+     */
+    public int getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public boolean contains(int keyId) {
+        return keys.containsKey(keyId);
+    }
+
+    /**
+     * @return the key with the given id, waiting for its derivation if needed.
+     * @throws EncryptionException if the key is unknown or its derivation failed.
+     */
+    public SecretKey getKey(int keyId) throws EncryptionException {
+        CompletableFuture<SecretKey> key = keys.get(keyId);
+        if (key == null) {
+            throw new EncryptionException("Unknown encryption key: " + keyId);
+        }
+        try {
+            return key.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof EncryptionException ? (EncryptionException) cause : new EncryptionException(cause);
+        }
+    }
+
+    /**
+     * @return {@code true} if all the keys have been successfully derived.
+     */
+    public boolean isReady() {
+        return keys.values().stream().allMatch(k -> k.isDone() && !k.isCompletedExceptionally());
+    }
+
+    /**
+     * @return {@code true} if the derivation of any key failed.
+     */
+    public boolean isFailed() {
+        return keys.values().stream().anyMatch(CompletableFuture::isCompletedExceptionally);
+    }
+}
@@ -0,0 +1,30 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the instance out of service until all the field encryption keys have been derived.
+ * It's part of the {@code readiness} health group.
+ */
+@Component
+public class EncryptionKeysHealthIndicator implements HealthIndicator {
+
+    private final EncryptionKeyRegistry encryptionKeyRegistry;
+
+    public EncryptionKeysHealthIndicator(EncryptionKeyRegistry encryptionKeyRegistry) {
+        this.encryptionKeyRegistry = encryptionKeyRegistry;
+    }
+
+    @Override
+    public Health health() {
+        if (encryptionKeyRegistry.isReady()) {
+            return Health.up().withDetail("keys", encryptionKeyRegistry.getKeyIds()).build();
+        }
+        if (encryptionKeyRegistry.isFailed()) {
+            return Health.down().withDetail("error", "key derivation failed").build();
+        }
+        return Health.outOfService().build();
+    }
+}
@@ -3,8 +3,6 @@ package com.fillumina.demo.jhcryptfield.security;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
@@ -15,9 +13,9 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.KeyGenerator;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -38,8 +36,22 @@ public class EncryptionUtils {
 
     private static final Charset UTF_8 = StandardCharsets.UTF_8;
 
+    private static final byte[] NO_HEADER = new byte[0];
+
+    // the undertow default is 8 worker threads per core
+    public static final int CIPHER_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 8;
+
+    private static final CipherPool CIPHER_POOL = new CipherPool(ENCRYPT_ALGO, CIPHER_POOL_SIZE);
+
+    // SecureRandom is thread safe, creating one per call would reseed it every time
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     public static class EncryptionException extends RuntimeException {
 
+        public EncryptionException(String message) {
+            super(message);
+        }
+
         public EncryptionException(Throwable cause) {
             super(cause);
         }
@@ -51,66 +63,241 @@ public class EncryptionUtils {
 
     // AES-GCM needs GCMParameterSpec
     public static byte[] encrypt(byte[] pText, SecretKey secret, byte[] iv) throws EncryptionException {
+        Cipher cipher = CIPHER_POOL.borrow(Cipher.ENCRYPT_MODE, secret, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
         try {
-            Cipher cipher = Cipher.getInstance(ENCRYPT_ALGO);
-            cipher.init(Cipher.ENCRYPT_MODE, secret, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
             byte[] encryptedText = cipher.doFinal(pText);
+            CIPHER_POOL.release(cipher);
             return encryptedText;
-        } catch (
-            NoSuchAlgorithmException
-            | NoSuchPaddingException
-            | InvalidKeyException
-            | InvalidAlgorithmParameterException
-            | IllegalBlockSizeException
-            | BadPaddingException ex
-        ) {
+        } catch (IllegalBlockSizeException | BadPaddingException ex) {
             throw new EncryptionException(ex);
         }
     }
 
     // prefix IV length + IV bytes to cipher text
     public static byte[] encryptWithPrefixIV(byte[] pText, SecretKey secret, byte[] iv) {
-        byte[] cipherText = encrypt(pText, secret, iv);
-
-        byte[] cipherTextWithIv = ByteBuffer.allocate(iv.length + cipherText.length).put(iv).put(cipherText).array();
-        return cipherTextWithIv;
+        return encryptWithHeader(pText, 0, pText.length, secret, NO_HEADER, iv);
     }
 
     public static String decrypt(byte[] cText, SecretKey secret, byte[] iv) throws EncryptionException {
+        Cipher cipher = CIPHER_POOL.borrow(Cipher.DECRYPT_MODE, secret, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
         try {
-            Cipher cipher = Cipher.getInstance(ENCRYPT_ALGO);
-            cipher.init(Cipher.DECRYPT_MODE, secret, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
             byte[] plainText = cipher.doFinal(cText);
+            CIPHER_POOL.release(cipher);
             return new String(plainText, UTF_8);
-        } catch (
-            InvalidKeyException
-            | InvalidAlgorithmParameterException
-            | NoSuchAlgorithmException
-            | NoSuchPaddingException
-            | IllegalBlockSizeException
-            | BadPaddingException ex
-        ) {
+        } catch (IllegalBlockSizeException | BadPaddingException ex) {
             throw new EncryptionException(ex);
         }
     }
 
     public static String decryptWithPrefixIV(byte[] cText, SecretKey secret) {
-        ByteBuffer bb = ByteBuffer.wrap(cText);
+        return new String(decryptWithHeader(cText, 0, secret), UTF_8);
+    }
 
-        byte[] iv = new byte[IV_LENGTH_BYTE];
-        bb.get(iv);
-        //bb.get(iv, 0, iv.length);
+    // prefix header + IV bytes to cipher text, the header is authenticated as additional data
+    public static byte[] encryptWithHeader(byte[] pText, SecretKey secret, byte[] header, byte[] iv) throws EncryptionException {
+        return encryptWithHeader(pText, 0, pText.length, secret, header, iv);
+    }
 
-        byte[] cipherText = new byte[bb.remaining()];
-        bb.get(cipherText);
+    /**
+     * Encrypts a slice of the given plain text straight into the returned array,
+     * the only allocation.
+     */
+    public static byte[] encryptWithHeader(byte[] pText, int pOffset, int pLength, SecretKey secret, byte[] header, byte[] iv)
+        throws EncryptionException {
+        Cipher cipher = CIPHER_POOL.borrow(Cipher.ENCRYPT_MODE, secret, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+        try {
+            if (header.length > 0) {
+                cipher.updateAAD(header);
+            }
+            int offset = header.length + iv.length;
+            byte[] cipherText = new byte[offset + cipher.getOutputSize(pLength)];
+            System.arraycopy(header, 0, cipherText, 0, header.length);
+            System.arraycopy(iv, 0, cipherText, header.length, iv.length);
+            cipher.doFinal(pText, pOffset, pLength, cipherText, offset);
+            CIPHER_POOL.release(cipher);
+            return cipherText;
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
 
-        String plainText = decrypt(cipherText, secret, iv);
-        return plainText;
+    /**
+     * Decrypts {@code header | IV | cipher text + tag}, a header length of 0 is
+     * for the values encrypted with {@link #encryptWithPrefixIV(byte[], SecretKey, byte[])}.
+     */
+    public static byte[] decryptWithHeader(byte[] cText, int headerLength, SecretKey secret) throws EncryptionException {
+        Cipher cipher = initDecryption(cText, headerLength, secret);
+        int offset = headerLength + IV_LENGTH_BYTE;
+        try {
+            byte[] plainText = cipher.doFinal(cText, offset, cText.length - offset);
+            CIPHER_POOL.release(cipher);
+            return plainText;
+        } catch (IllegalBlockSizeException | BadPaddingException ex) {
+            throw new EncryptionException(ex);
+        }
     }
 
+    /**
+     * Like {@link #decryptWithHeader(byte[], int, SecretKey)} but decrypts into
+     * the given buffer, replacing its content.
+     */
+    public static void decryptWithHeader(byte[] cText, int headerLength, SecretKey secret, PlainTextBuffer out) throws EncryptionException {
+        Cipher cipher = initDecryption(cText, headerLength, secret);
+        int offset = headerLength + IV_LENGTH_BYTE;
+        try {
+            int length = cText.length - offset;
+            byte[] buffer = out.ensureCapacity(cipher.getOutputSize(length));
+            out.setSize(cipher.doFinal(cText, offset, length, buffer, 0));
+            CIPHER_POOL.release(cipher);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
+
+    /**
+     * @return the length of {@code header | IV | cipher text + tag} for a plain
+     * text of the given length, to size the buffers of the {@link ByteBuffer} API.
+     */
+    public static int cipherTextLength(int plainTextLength, int headerLength) {
+        return headerLength + IV_LENGTH_BYTE + plainTextLength + TAG_LENGTH_BIT / 8;
+    }
+
+    /**
+     * @return the length of the plain text of a {@code header | IV | cipher text + tag}
+     * of the given length.
+     */
+    public static int plainTextLength(int cipherTextLength, int headerLength) {
+        return cipherTextLength - headerLength - IV_LENGTH_BYTE - TAG_LENGTH_BIT / 8;
+    }
+
+    public static int encryptWithPrefixIV(ByteBuffer pText, SecretKey secret, byte[] iv, ByteBuffer out) throws EncryptionException {
+        return encryptWithHeader(pText, secret, NO_HEADER, iv, out);
+    }
+
+    /**
+     * Encrypts the remaining plain text writing {@code header | IV | cipher text + tag}
+     * at the position of the output buffer, both buffers are advanced as by
+     * {@link Cipher#doFinal(ByteBuffer, ByteBuffer)}. Buffers can be direct and
+     * reused across calls, nothing is allocated.
+     *
+     * @return the number of bytes written.
+     * @throws EncryptionException if the output buffer is too small (see
+     * {@link #cipherTextLength(int, int)}), nothing is written in that case.
+     */
+    public static int encryptWithHeader(ByteBuffer pText, SecretKey secret, byte[] header, byte[] iv, ByteBuffer out)
+        throws EncryptionException {
+        int length = cipherTextLength(pText.remaining(), header.length);
+        if (out.remaining() < length) {
+            throw new EncryptionException("Output buffer too small: " + out.remaining() + " bytes, " + length + " needed");
+        }
+        Cipher cipher = CIPHER_POOL.borrow(Cipher.ENCRYPT_MODE, secret, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+        try {
+            if (header.length > 0) {
+                cipher.updateAAD(header);
+            }
+            out.put(header).put(iv);
+            int written = header.length + iv.length + cipher.doFinal(pText, out);
+            CIPHER_POOL.release(cipher);
+            return written;
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
+
+    /**
+     * Decrypts the remaining {@code header | IV | cipher text + tag} at the
+     * position of the output buffer, both buffers are advanced as by
+     * {@link Cipher#doFinal(ByteBuffer, ByteBuffer)}. Header and IV are read
+     * in place (the IV is copied only from direct buffers), a header length of
+     * 0 is for the values encrypted with {@link #encryptWithPrefixIV(ByteBuffer, SecretKey, byte[], ByteBuffer)}.
+     *
+     * @return the number of bytes written.
+     * @throws EncryptionException if the cipher text cannot be authenticated
+     * or the output buffer is too small (see {@link #plainTextLength(int, int)}).
+     */
+    public static int decryptWithHeader(ByteBuffer cText, int headerLength, SecretKey secret, ByteBuffer out) throws EncryptionException {
+        int position = cText.position();
+        int offset = headerLength + IV_LENGTH_BYTE;
+        if (cText.remaining() < offset) {
+            throw new EncryptionException("Cipher text too short: " + cText.remaining() + " bytes");
+        }
+        GCMParameterSpec spec;
+        if (cText.hasArray()) {
+            spec = new GCMParameterSpec(TAG_LENGTH_BIT, cText.array(), cText.arrayOffset() + position + headerLength, IV_LENGTH_BYTE);
+        } else {
+            byte[] iv = new byte[IV_LENGTH_BYTE];
+            cText.duplicate().position(position + headerLength).get(iv);
+            spec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
+        }
+        Cipher cipher = CIPHER_POOL.borrow(Cipher.DECRYPT_MODE, secret, spec);
+        try {
+            if (headerLength > 0) {
+                ByteBuffer header = cText.duplicate();
+                header.limit(position + headerLength);
+                cipher.updateAAD(header);
+            }
+            cText.position(position + offset);
+            int written = cipher.doFinal(cText, out);
+            CIPHER_POOL.release(cipher);
+            return written;
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException ex) {
+            throw new EncryptionException(ex);
+        }
+    }
+
+    private static Cipher initDecryption(byte[] cText, int headerLength, SecretKey secret) throws EncryptionException {
+        int offset = headerLength + IV_LENGTH_BYTE;
+        if (cText.length < offset) {
+            throw new EncryptionException("Cipher text too short: " + cText.length + " bytes");
+        }
+        Cipher cipher = CIPHER_POOL.borrow(
+            Cipher.DECRYPT_MODE,
+            secret,
+            new GCMParameterSpec(TAG_LENGTH_BIT, cText, headerLength, IV_LENGTH_BYTE)
+        );
+        if (headerLength > 0) {
+            cipher.updateAAD(cText, 0, headerLength);
+        }
+        return cipher;
+    }
+
+    /**
+     * Deterministic encryption with AES-SIV (see {@link AesSiv}): the same plain
+     * text, key and header always give the same {@code header | SIV | cipher text},
+     * so encrypted columns can be compared by equality in the database. No IV
+     * is needed and the header is authenticated as additional data.
+     */
+    public static byte[] encryptDeterministic(byte[] pText, int pOffset, int pLength, AesSiv.Key key, byte[] header)
+        throws EncryptionException {
+        return AesSiv.encrypt(pText, pOffset, pLength, key, header);
+    }
+
+    public static byte[] encryptDeterministic(byte[] pText, AesSiv.Key key, byte[] header) throws EncryptionException {
+        return AesSiv.encrypt(pText, 0, pText.length, key, header);
+    }
+
+    /**
+     * Decrypts a value encrypted by {@link #encryptDeterministic(byte[], int, int, AesSiv.Key, byte[])}
+     * into the given buffer, replacing its content.
+     */
+    public static void decryptDeterministic(byte[] cText, int headerLength, AesSiv.Key key, PlainTextBuffer out)
+        throws EncryptionException {
+        AesSiv.decrypt(cText, headerLength, key, out);
+    }
+
+    public static byte[] decryptDeterministic(byte[] cText, int headerLength, AesSiv.Key key) throws EncryptionException {
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            AesSiv.decrypt(cText, headerLength, key, buffer);
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Use {@link NonceGenerator} for AES-GCM IVs, it counts them per key.
+     */
     public static byte[] getRandomNonce(int numBytes) {
         byte[] nonce = new byte[numBytes];
-        new SecureRandom().nextBytes(nonce);
+        SECURE_RANDOM.nextBytes(nonce);
         return nonce;
     }
 
@@ -140,38 +327,18 @@ public class EncryptionUtils {
     }
 
     public static byte[] decodeHexString(String hexString) {
-        if (hexString.length() % 2 == 1) {
-            throw new IllegalArgumentException("Invalid hexadecimal String supplied.");
-        }
-
-        byte[] bytes = new byte[hexString.length() / 2];
-        for (int i = 0; i < hexString.length(); i += 2) {
-            bytes[i / 2] = hexToByte(hexString.substring(i, i + 2));
-        }
-        return bytes;
+        return HexCodec.decode(hexString);
     }
 
     public static byte hexToByte(String hexString) {
-        int firstDigit = toDigit(hexString.charAt(0));
-        int secondDigit = toDigit(hexString.charAt(1));
+        int firstDigit = HexCodec.digit(hexString.charAt(0));
+        int secondDigit = HexCodec.digit(hexString.charAt(1));
         return (byte) ((firstDigit << 4) + secondDigit);
     }
 
-    private static int toDigit(char hexChar) {
-        int digit = Character.digit(hexChar, 16);
-        if (digit == -1) {
-            throw new IllegalArgumentException("Invalid Hexadecimal Character: " + hexChar);
-        }
-        return digit;
-    }
-
     // hex representation
     public static String hex(byte[] bytes) {
-        StringBuilder result = new StringBuilder();
-        for (byte b : bytes) {
-            result.append(String.format("%02x", b));
-        }
-        return result.toString();
+        return HexCodec.encode(bytes);
     }
 
     // print hex with block size split
@@ -0,0 +1,36 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+
+/**
+ * Reflection-free JSON and binary serializer of a value type, generated at build time by
+ * {@link com.fillumina.demo.jhcryptfield.security.processor.EncryptedCodecProcessor}
+ * for the value types of the {@link Encrypted} fields. The implementation of
+ * {@code com.example.Foo} is {@code com.example.FooCodec}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public interface GeneratedCodec<T> {
+    String CLASS_SUFFIX = "Codec";
+
+    void write(T value, JsonGenerator generator) throws IOException;
+
+    /**
+     * Reads an object starting from the current token, or the next one if
+     * the parser has no current token.
+     */
+    T read(JsonParser parser) throws IOException;
+
+    /**
+     * Writes the number of fields followed by their values in declaration order.
+     */
+    void writeBinary(T value, BinaryPayloadWriter out);
+
+    /**
+     * Reads the fields known to this codec, more fields may follow if they
+     * were written by a newer version of the type.
+     */
+    T readBinary(BinaryPayloadReader in) throws IOException;
+}
@@ -0,0 +1,90 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import java.util.Arrays;
+
+/**
+ * Table driven lowercase hexadecimal encoder and decoder.
+ * <p>
+ * Encodes and decodes directly into preallocated arrays without creating
+ * intermediate objects.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class HexCodec {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    // maps an ASCII char to its hexadecimal value or -1
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private HexCodec() {}
+
+    public static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+
+    public static String encode(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length * 2];
+        encode(bytes, offset, length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Writes {@code 2 * length} chars into {@code dest} starting at {@code destOffset}.
+     */
+    public static void encode(byte[] bytes, int offset, int length, char[] dest, int destOffset) {
+        for (int i = offset, j = destOffset, end = offset + length; i < end; i++) {
+            int b = bytes[i];
+            dest[j++] = DIGITS[(b >>> 4) & 0x0F];
+            dest[j++] = DIGITS[b & 0x0F];
+        }
+    }
+
+    public static byte[] decode(CharSequence hex) {
+        return decode(hex, 0, hex.length());
+    }
+
+    /**
+     * Decodes the {@code [start, end)} slice of the given sequence.
+     */
+    public static byte[] decode(CharSequence hex, int start, int end) {
+        int length = end - start;
+        if ((length & 1) == 1) {
+            throw new IllegalArgumentException("Invalid hexadecimal String supplied.");
+        }
+        byte[] bytes = new byte[length / 2];
+        decode(hex, start, end, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Writes {@code (end - start) / 2} bytes into {@code dest} starting at {@code destOffset}.
+     */
+    public static void decode(CharSequence hex, int start, int end, byte[] dest, int destOffset) {
+        if (((end - start) & 1) == 1) {
+            throw new IllegalArgumentException("Invalid hexadecimal String supplied.");
+        }
+        for (int i = start, j = destOffset; i < end; i += 2) {
+            dest[j++] = (byte) ((digit(hex.charAt(i)) << 4) | digit(hex.charAt(i + 1)));
+        }
+    }
+
+    static int digit(char hexChar) {
+        int digit = hexChar < VALUES.length ? VALUES[hexChar] : -1;
+        if (digit == -1) {
+            throw new IllegalArgumentException("Invalid Hexadecimal Character: " + hexChar);
+        }
+        return digit;
+    }
+}
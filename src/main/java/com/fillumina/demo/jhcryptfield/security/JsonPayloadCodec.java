@@ -0,0 +1,96 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.IdSettable;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes values as JSON, the ids of {@link IdSettable} values are not stored.
+ * <p>
+ * Types with a {@link GeneratedCodec} (generated at build time for the
+ * {@link Encrypted} fields) are encoded and decoded by it, otherwise by Jackson
+ * databind. Both produce the same JSON.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class JsonPayloadCodec implements PayloadCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // the id of the encrypted object is the id of its owner, no need to store it
+    @JsonIgnoreProperties("id")
+    private abstract static class IgnoreIdMixIn {}
+
+    static {
+        OBJECT_MAPPER.addMixIn(IdSettable.class, IgnoreIdMixIn.class);
+    }
+
+    private static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getFactory();
+
+    private static final Map<Class<?>, Optional<GeneratedCodec<?>>> GENERATED_CODECS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, ObjectReader> OBJECT_READERS = new ConcurrentHashMap<>();
+
+    @Override
+    public void encode(Object value, PlainTextBuffer out) throws EncryptionException {
+        GeneratedCodec<Object> codec = getGeneratedCodec(value.getClass());
+        try {
+            if (codec == null) {
+                OBJECT_MAPPER.writeValue(out.asOutputStream(), value);
+                return;
+            }
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(out.asOutputStream(), JsonEncoding.UTF8)) {
+                codec.write(value, generator);
+            }
+        } catch (IOException ex) {
+            throw new EncryptionException("Cannot serialize " + value.getClass().getSimpleName(), ex);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] plainText, int offset, int length, Class<T> type) throws EncryptionException {
+        GeneratedCodec<T> codec = getGeneratedCodec(type);
+        try {
+            if (codec == null) {
+                return OBJECT_READERS.computeIfAbsent(type, OBJECT_MAPPER::readerFor).readValue(plainText, offset, length);
+            }
+            try (JsonParser parser = JSON_FACTORY.createParser(plainText, offset, length)) {
+                return codec.read(parser);
+            }
+        } catch (IOException ex) {
+            throw new EncryptionException("Cannot deserialize " + type.getSimpleName(), ex);
+        }
+    }
+
+    /**
+     * @return the codec generated for the given type or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> GeneratedCodec<T> getGeneratedCodec(Class<?> type) {
+        return (GeneratedCodec<T>) GENERATED_CODECS.computeIfAbsent(type, JsonPayloadCodec::loadGeneratedCodec).orElse(null);
+    }
+
+    private static Optional<GeneratedCodec<?>> loadGeneratedCodec(Class<?> type) {
+        try {
+            Class<?> codecClass = Class.forName(type.getName() + GeneratedCodec.CLASS_SUFFIX, true, type.getClassLoader());
+            if (GeneratedCodec.class.isAssignableFrom(codecClass)) {
+                return Optional.of((GeneratedCodec<?>) codecClass.getDeclaredConstructor().newInstance());
+            }
+        } catch (ClassNotFoundException ex) {
+            // not generated
+        } catch (ReflectiveOperationException ex) {
+            throw new EncryptionException("Cannot create the codec of " + type.getSimpleName(), ex);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,113 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.nio.ByteBuffer;
+
+/**
+ * AES-GCM with a key ring: values are always encrypted with the active key
+ * while any configured key can be used for decryption (see
+ * {@link EncryptionKeyRegistry} and {@link CipherTextHeader}).
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class KeyRingCipherEngine implements CipherEngine {
+
+    /**
+     * The keys are derived at startup by the {@link EncryptionKeyRegistry}.
+     */
+    private static EncryptionKeyRegistry getKeyRegistry() {
+        return EncryptionKeyRegistry.getInstance();
+    }
+
+    /**
+     * @return header, IV and cipher text encrypted with the active key.
+     */
+    @Override
+    public byte[] encrypt(byte[] plainText, int offset, int length) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = getKeyRegistry();
+        int keyId = keyRegistry.getActiveKeyId();
+        byte[] iv = NonceGenerator.forKey(String.valueOf(keyId)).next();
+        return EncryptionUtils.encryptWithHeader(plainText, offset, length, keyRegistry.getKey(keyId), CipherTextHeader.create(keyId), iv);
+    }
+
+    /**
+     * Decrypts values encrypted with any known key, including the legacy ones without header.
+     */
+    @Override
+    public void decrypt(byte[] cypher, PlainTextBuffer out) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = getKeyRegistry();
+        int keyId = CipherTextHeader.keyIdOf(cypher);
+        if (keyId != -1 && keyRegistry.contains(keyId)) {
+            try {
+                EncryptionUtils.decryptWithHeader(cypher, CipherTextHeader.LENGTH, keyRegistry.getKey(keyId), out);
+                return;
+            } catch (EncryptionException ex) {
+                // may be a legacy value looking like a header
+                if (!keyRegistry.contains(EncryptionKeyRegistry.LEGACY_KEY_ID)) {
+                    throw ex;
+                }
+            }
+        }
+        EncryptionUtils.decryptWithHeader(cypher, 0, keyRegistry.getKey(EncryptionKeyRegistry.LEGACY_KEY_ID), out);
+    }
+
+    /**
+     * Encrypts the remaining plain text with the active key into the output
+     * buffer (see {@link EncryptionUtils#encryptWithHeader(ByteBuffer, javax.crypto.SecretKey, byte[], byte[], ByteBuffer)}).
+     *
+     * @return the number of bytes written.
+     */
+    public int encrypt(ByteBuffer plainText, ByteBuffer out) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = getKeyRegistry();
+        int keyId = keyRegistry.getActiveKeyId();
+        byte[] iv = NonceGenerator.forKey(String.valueOf(keyId)).next();
+        return EncryptionUtils.encryptWithHeader(plainText, keyRegistry.getKey(keyId), CipherTextHeader.create(keyId), iv, out);
+    }
+
+    /**
+     * Decrypts the remaining cipher text into the output buffer, like
+     * {@link #decrypt(byte[], PlainTextBuffer)}.
+     *
+     * @return the number of bytes written.
+     */
+    public int decrypt(ByteBuffer cypher, ByteBuffer out) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = getKeyRegistry();
+        int keyId = CipherTextHeader.keyIdOf(cypher);
+        if (keyId != -1 && keyRegistry.contains(keyId)) {
+            int position = cypher.position();
+            int outPosition = out.position();
+            try {
+                return EncryptionUtils.decryptWithHeader(cypher, CipherTextHeader.LENGTH, keyRegistry.getKey(keyId), out);
+            } catch (EncryptionException ex) {
+                // may be a legacy value looking like a header
+                if (!keyRegistry.contains(EncryptionKeyRegistry.LEGACY_KEY_ID)) {
+                    throw ex;
+                }
+                cypher.position(position);
+                out.position(outPosition);
+            }
+        }
+        return EncryptionUtils.decryptWithHeader(cypher, 0, keyRegistry.getKey(EncryptionKeyRegistry.LEGACY_KEY_ID), out);
+    }
+
+    /**
+     * @return the value re-encrypted with the active key or {@code null} if it
+     * is already encrypted with it.
+     */
+    public byte[] reEncrypt(byte[] cypher) throws EncryptionException {
+        EncryptionKeyRegistry keyRegistry = getKeyRegistry();
+        int activeKeyId = keyRegistry.getActiveKeyId();
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            if (CipherTextHeader.keyIdOf(cypher) == activeKeyId) {
+                try {
+                    EncryptionUtils.decryptWithHeader(cypher, CipherTextHeader.LENGTH, keyRegistry.getKey(activeKeyId), buffer);
+                    return null;
+                } catch (EncryptionException ex) {
+                    // may be a legacy value looking like a header
+                }
+            }
+            decrypt(cypher, buffer);
+            return encrypt(buffer.array(), 0, buffer.size());
+        }
+    }
+}
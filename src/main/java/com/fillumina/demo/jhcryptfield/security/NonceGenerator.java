@@ -0,0 +1,88 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the 96 bits AES-GCM nonces for a single key.
+ * <p>
+ * Each nonce is fully random (the RBG-based construction of NIST SP 800-38D,
+ * 8.2.2): nothing has to be coordinated between the processes sharing a key
+ * and nothing restarts with the process. Random nonces collide with a
+ * negligible probability only below {@link #GCM_MESSAGE_LIMIT} invocations per
+ * key. Each thread draws from its own {@link SecureRandom} to avoid contending
+ * on the entropy source.
+ * <p>
+ * The limit is not enforced here: the count is kept in memory by each
+ * instance and restarts with the process, so it cannot tell how many nonces
+ * a key has issued. It is only published as the {@code encryption.nonces.issued}
+ * counter tagged with the key id, to alert when the sum over all the instances
+ * and restarts approaches the limit and the key must be rotated.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public class NonceGenerator {
+
+    public static final String METRIC_NAME = "encryption.nonces.issued";
+    public static final long GCM_MESSAGE_LIMIT = 1L << 32;
+
+    private static final ThreadLocal<SecureRandom> SECURE_RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+    private static final Map<String, NonceGenerator> GENERATORS = new ConcurrentHashMap<>();
+
+    private final String keyId;
+    private final AtomicLong counter;
+
+    /**
+     * @return the shared generator of the given key.
+     */
+    public static NonceGenerator forKey(String keyId) {
+        return GENERATORS.computeIfAbsent(keyId, NonceGenerator::new);
+    }
+
+    NonceGenerator(String keyId) {
+        this(keyId, 0);
+    }
+
+    NonceGenerator(String keyId, long issued) {
+        this.keyId = keyId;
+        this.counter = new AtomicLong(issued);
+        FunctionCounter
+            .builder(METRIC_NAME, counter, AtomicLong::doubleValue)
+            .description("AES-GCM nonces issued by this instance")
+            .tag("key", keyId)
+            .register(Metrics.globalRegistry);
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    /**
+     * @return the number of nonces issued by this instance since it started.
+     */
+    public long getIssued() {
+        return counter.get();
+    }
+
+    /**
+     * @return a new {@link EncryptionUtils#IV_LENGTH_BYTE} bytes nonce.
+     */
+    public byte[] next() {
+        counter.incrementAndGet();
+        byte[] nonce = new byte[EncryptionUtils.IV_LENGTH_BYTE];
+        SECURE_RANDOM.get().nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * Writes a new nonce into the given array at the given offset.
+     */
+    public void next(byte[] dest, int offset) {
+        byte[] nonce = next();
+        System.arraycopy(nonce, 0, dest, offset, nonce.length);
+    }
+}
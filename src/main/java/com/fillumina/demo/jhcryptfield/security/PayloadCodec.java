@@ -0,0 +1,30 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+
+/**
+ * Converts the value of an encrypted field to and from its plain text.
+ * Implementations must be thread safe and have a public no-args constructor
+ * to be usable in {@link Encrypted#codec()}.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public interface PayloadCodec {
+    /**
+     * Appends the plain text of the given value to the buffer.
+     */
+    void encode(Object value, PlainTextBuffer out) throws EncryptionException;
+
+    <T> T decode(byte[] plainText, int offset, int length, Class<T> type) throws EncryptionException;
+
+    default byte[] encode(Object value) throws EncryptionException {
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            encode(value, buffer);
+            return buffer.toByteArray();
+        }
+    }
+
+    default <T> T decode(byte[] plainText, Class<T> type) throws EncryptionException {
+        return decode(plainText, 0, plainText.length, type);
+    }
+}
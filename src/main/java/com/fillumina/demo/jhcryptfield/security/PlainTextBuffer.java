@@ -0,0 +1,119 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable buffer for plain texts, reused by each thread so that encoding and
+ * decryption don't allocate a new array for every value. The content is wiped
+ * when the buffer is closed:
+ * <pre>
+ * try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+ *     codec.encode(value, buffer);
+ *     return engine.encrypt(buffer.array(), 0, buffer.size());
+ * }
+ * </pre>
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class PlainTextBuffer implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // don't keep huge arrays around after an unusually big value
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<PlainTextBuffer> THREAD_BUFFER = ThreadLocal.withInitial(PlainTextBuffer::new);
+
+    private byte[] array = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean inUse;
+
+    // closing it doesn't release the buffer
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            PlainTextBuffer.this.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            PlainTextBuffer.this.write(b, off, len);
+        }
+    };
+
+    private PlainTextBuffer() {}
+
+    /**
+     * @return the empty buffer of the current thread, or a new one if it is
+     * already in use.
+     */
+    public static PlainTextBuffer acquire() {
+        PlainTextBuffer buffer = THREAD_BUFFER.get();
+        if (buffer.inUse) {
+            buffer = new PlainTextBuffer();
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    /**
+     * @return the backing array, valid up to {@link #size()} and until the next write.
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        if (size < 0 || size > array.length) {
+            throw new IndexOutOfBoundsException("Invalid size: " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * @return the backing array, grown to at least the given capacity.
+     */
+    public byte[] ensureCapacity(int capacity) {
+        if (capacity > array.length) {
+            byte[] grown = Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+            Arrays.fill(array, (byte) 0);
+            array = grown;
+        }
+        return array;
+    }
+
+    public void write(int b) {
+        ensureCapacity(size + 1)[size++] = (byte) b;
+    }
+
+    public void write(byte[] bytes, int offset, int length) {
+        System.arraycopy(bytes, offset, ensureCapacity(size + length), size, length);
+        size += length;
+    }
+
+    public OutputStream asOutputStream() {
+        return outputStream;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(array, size);
+    }
+
+    /**
+     * Wipes the content and makes the buffer available to the thread again.
+     */
+    @Override
+    public void close() {
+        Arrays.fill(array, 0, size, (byte) 0);
+        size = 0;
+        if (array.length > MAX_RETAINED_CAPACITY) {
+            array = new byte[INITIAL_CAPACITY];
+        }
+        inUse = false;
+    }
+}
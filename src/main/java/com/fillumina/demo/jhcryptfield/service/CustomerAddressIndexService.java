@@ -0,0 +1,97 @@
+package com.fillumina.demo.jhcryptfield.service;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository.AddressRaw;
+import com.fillumina.demo.jhcryptfield.security.BlindIndex;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Computes the blind indexes of the customer addresses saved before indexing
+ * was enabled (see {@link com.fillumina.demo.jhcryptfield.domain.CustomerAddressIndex}).
+ * <p>
+ * The rows without indexes are walked in id order, one batch per transaction,
+ * while the application stays live: a row is only indexed if its address
+ * hasn't been modified meanwhile (a concurrent write indexes it anyway).
+ */
+@Service
+public class CustomerAddressIndexService {
+
+    private final Logger log = LoggerFactory.getLogger(CustomerAddressIndexService.class);
+
+    private final CustomerRepository customerRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlindIndex blindIndex;
+
+    private final int batchSize;
+
+    public CustomerAddressIndexService(
+        CustomerRepository customerRepository,
+        PlatformTransactionManager transactionManager,
+        BlindIndex blindIndex,
+        ApplicationProperties applicationProperties
+    ) {
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.blindIndex = blindIndex;
+        this.batchSize = applicationProperties.getFieldEncryption().getBlindIndex().getBatchSize();
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexAtStartup() {
+        if (blindIndex.isEnabled()) {
+            indexAll();
+        }
+    }
+
+    /**
+     * Indexes all the addresses without blind indexes.
+     *
+     * @return the number of indexed rows.
+     */
+    public long indexAll() {
+        log.info("Starting customer address indexing");
+        long start = System.currentTimeMillis();
+        long[] indexed = new long[1];
+        Long lastId = Long.MIN_VALUE;
+        while (lastId != null) {
+            final Long afterId = lastId;
+            lastId = transactionTemplate.execute(status -> indexBatch(afterId, indexed));
+        }
+        log.info("Customer address indexing completed: {} rows indexed in {} ms", indexed[0], System.currentTimeMillis() - start);
+        return indexed[0];
+    }
+
+    /**
+     * @return the last id processed or {@code null} if there are no more rows.
+     */
+    private Long indexBatch(Long afterId, long[] indexed) {
+        List<AddressRaw> batch = customerRepository.findUnindexedAddressRawByIdGreaterThan(
+            afterId,
+            blindIndex.getPostcodePrefixLength() > 0,
+            PageRequest.of(0, batchSize)
+        );
+        Long lastId = null;
+        for (AddressRaw row : batch) {
+            lastId = row.getId();
+            if (row.getAddressRaw().get() == null) {
+                log.warn("Cannot decrypt the address of customer {}", row.getId());
+            } else {
+                indexed[0] += customerRepository.updateAddressIndex(row.getId(), row.getAddressRaw());
+            }
+        }
+        return lastId;
+    }
+}
@@ -0,0 +1,229 @@
+package com.fillumina.demo.jhcryptfield.service;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository.AddressRaw;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository.ContactRaw;
+import com.fillumina.demo.jhcryptfield.security.DeterministicCipherEngine;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import com.fillumina.demo.jhcryptfield.security.KeyRingCipherEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Re-encrypts with the active key the customer addresses, emails and telephones
+ * encrypted with any other key.
+ * <p>
+ * The {@code customer} table is walked in id order, once for the addresses and
+ * once for the contacts, one batch per transaction,
+ * while the application stays live: a row is only replaced if it hasn't been
+ * modified meanwhile (a concurrent write uses the active key anyway). When all
+ * rows use the active key the old keys can be removed from the configuration.
+ * <p>
+ * Progress and throughput are published as {@code encryption.rotation.*} metrics.
+ */
+@Service
+public class CustomerAddressKeyRotationService {
+
+    private static final KeyRingCipherEngine CIPHER_ENGINE = new KeyRingCipherEngine();
+
+    private static final DeterministicCipherEngine CONTACT_CIPHER_ENGINE = new DeterministicCipherEngine();
+
+    /**
+     * A native single row update of a re-encrypted contact column.
+     */
+    @FunctionalInterface
+    private interface ReEncryptUpdate {
+        int update(Long id, byte[] expected, byte[] value);
+    }
+
+    private final Logger log = LoggerFactory.getLogger(CustomerAddressKeyRotationService.class);
+
+    private final CustomerRepository customerRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Rotation rotation;
+
+    private final Counter reEncryptedRows;
+    private final Counter currentRows;
+    private final Counter conflictRows;
+    private final Counter failedRows;
+    private final Timer batchTimer;
+
+    private final AtomicLong processedRows = new AtomicLong();
+    private final AtomicLong totalRows = new AtomicLong();
+
+    public CustomerAddressKeyRotationService(
+        CustomerRepository customerRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rotation = applicationProperties.getFieldEncryption().getRotation();
+        this.reEncryptedRows = rowCounter(meterRegistry, "reencrypted");
+        this.currentRows = rowCounter(meterRegistry, "current");
+        this.conflictRows = rowCounter(meterRegistry, "conflict");
+        this.failedRows = rowCounter(meterRegistry, "failed");
+        this.batchTimer =
+            Timer.builder("encryption.rotation.batch").description("Key rotation batches").tag("table", "customer").register(meterRegistry);
+        Gauge
+            .builder("encryption.rotation.progress", this, CustomerAddressKeyRotationService::getProgress)
+            .description("Ratio of customer rows processed by the current key rotation")
+            .tag("table", "customer")
+            .register(meterRegistry);
+    }
+
+    private static Counter rowCounter(MeterRegistry meterRegistry, String result) {
+        return Counter
+            .builder("encryption.rotation.rows")
+            .description("Customer values processed by the key rotation")
+            .tag("table", "customer")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rotateAtStartup() {
+        if (rotation.isEnabled()) {
+            rotateAll();
+        }
+    }
+
+    /**
+     * Walks the whole table re-encrypting the values not using the active key.
+     *
+     * @return the number of re-encrypted values.
+     */
+    public long rotateAll() {
+        log.info("Starting customer key rotation");
+        long start = System.currentTimeMillis();
+        double reEncryptedBefore = reEncryptedRows.count();
+        processedRows.set(0);
+        totalRows.set(2 * customerRepository.count());
+        if (walk(this::rotateAddressBatch)) {
+            walk(this::rotateContactBatch);
+        }
+        long reEncrypted = (long) (reEncryptedRows.count() - reEncryptedBefore);
+        log.info(
+            "Customer key rotation completed: {} rows processed, {} values re-encrypted in {} ms",
+            processedRows.get(),
+            reEncrypted,
+            System.currentTimeMillis() - start
+        );
+        return reEncrypted;
+    }
+
+    /**
+     * Runs the given batch until there are no more rows.
+     *
+     * @return {@code false} if interrupted.
+     */
+    private boolean walk(UnaryOperator<Long> batch) {
+        Long lastId = Long.MIN_VALUE;
+        while (lastId != null) {
+            final Long afterId = lastId;
+            lastId = batchTimer.record(() -> transactionTemplate.execute(status -> batch.apply(afterId)));
+            if (lastId != null && rotation.getPauseMs() > 0) {
+                try {
+                    Thread.sleep(rotation.getPauseMs());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Customer key rotation interrupted");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the last id processed or {@code null} if there are no more rows.
+     */
+    private Long rotateAddressBatch(Long afterId) {
+        List<AddressRaw> batch = customerRepository.findAddressRawByIdGreaterThan(afterId, PageRequest.of(0, rotation.getBatchSize()));
+        Long lastId = null;
+        for (AddressRaw row : batch) {
+            lastId = row.getId();
+            try {
+                EncryptedValue<CustomerAddress> address = row.getAddressRaw();
+                byte[] reEncrypted = CIPHER_ENGINE.reEncrypt(address.getCipherText());
+                if (reEncrypted == null) {
+                    currentRows.increment();
+                } else {
+                    EncryptedValue<CustomerAddress> rotated = EncryptedValue.ofCipherText(reEncrypted, CustomerAddress.class);
+                    // a native single row update, a JPQL one would evict the whole Customer cache region
+                    if (customerRepository.reEncryptAddress(row.getId(), address, rotated) == 1) {
+                        reEncryptedRows.increment();
+                    } else {
+                        conflictRows.increment();
+                    }
+                }
+            } catch (EncryptionException ex) {
+                log.warn("Cannot decrypt the address of customer {}: {}", row.getId(), ex.getMessage());
+                failedRows.increment();
+            }
+            processedRows.incrementAndGet();
+        }
+        return lastId;
+    }
+
+    /**
+     * @return the last id processed or {@code null} if there are no more rows.
+     */
+    private Long rotateContactBatch(Long afterId) {
+        List<ContactRaw> batch = customerRepository.findContactRawByIdGreaterThan(afterId, PageRequest.of(0, rotation.getBatchSize()));
+        Long lastId = null;
+        for (ContactRaw row : batch) {
+            lastId = row.getId();
+            rotateContact(row.getId(), "email", row.getEmail(), customerRepository::reEncryptEmail);
+            rotateContact(row.getId(), "telephone", row.getTelephone(), customerRepository::reEncryptTelephone);
+            processedRows.incrementAndGet();
+        }
+        return lastId;
+    }
+
+    private void rotateContact(Long id, String column, EncryptedValue<String> value, ReEncryptUpdate update) {
+        if (value == null) {
+            return;
+        }
+        try {
+            byte[] cipherText = value.getCipherText();
+            byte[] reEncrypted = CONTACT_CIPHER_ENGINE.reEncrypt(cipherText);
+            if (reEncrypted == null) {
+                currentRows.increment();
+            } else if (update.update(id, cipherText, reEncrypted) == 1) {
+                reEncryptedRows.increment();
+            } else {
+                conflictRows.increment();
+            }
+        } catch (EncryptionException ex) {
+            log.warn("Cannot decrypt the {} of customer {}: {}", column, id, ex.getMessage());
+            failedRows.increment();
+        }
+    }
+
+    private double getProgress() {
+        long total = totalRows.get();
+        return total == 0 ? 1.0 : Math.min(1.0, (double) processedRows.get() / total);
+    }
+}
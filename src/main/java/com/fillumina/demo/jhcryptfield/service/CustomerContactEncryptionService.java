@@ -0,0 +1,82 @@
+package com.fillumina.demo.jhcryptfield.service;
+
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Encrypts the emails and telephones saved in plain text before they were
+ * encrypted (see {@link Customer#getEmail()}).
+ * <p>
+ * The rows still in plain text are walked in id order, one batch per
+ * transaction, while the application stays live: each batch is locked so a
+ * concurrent modification is never overwritten. Until a row is encrypted its
+ * values are read from the plain text columns but it cannot be found by
+ * {@link CustomerRepository#findAllByEmail(String)}.
+ */
+@Service
+public class CustomerContactEncryptionService {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final Logger log = LoggerFactory.getLogger(CustomerContactEncryptionService.class);
+
+    private final CustomerRepository customerRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public CustomerContactEncryptionService(CustomerRepository customerRepository, PlatformTransactionManager transactionManager) {
+        this.customerRepository = customerRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void encryptAtStartup() {
+        encryptAll();
+    }
+
+    /**
+     * Encrypts all the emails and telephones still in plain text.
+     *
+     * @return the number of encrypted rows.
+     */
+    public long encryptAll() {
+        long start = System.currentTimeMillis();
+        long encrypted = 0;
+        Long lastId = Long.MIN_VALUE;
+        while (lastId != null) {
+            final Long afterId = lastId;
+            List<Long> ids = transactionTemplate.execute(status -> encryptBatch(afterId));
+            encrypted += ids.size();
+            lastId = ids.isEmpty() ? null : ids.get(ids.size() - 1);
+        }
+        if (encrypted > 0) {
+            log.info("Encrypted the contacts of {} customers in {} ms", encrypted, System.currentTimeMillis() - start);
+        }
+        return encrypted;
+    }
+
+    /**
+     * @return the ids of the encrypted rows.
+     */
+    private List<Long> encryptBatch(Long afterId) {
+        List<Customer> batch = customerRepository.findWithPlainContactByIdGreaterThan(afterId, PageRequest.of(0, BATCH_SIZE));
+        for (Customer customer : batch) {
+            // the setters encrypt the values and clear the plain text columns
+            customer.setEmail(customer.getEmail());
+            customer.setTelephone(customer.getTelephone());
+        }
+        return batch.stream().map(Customer::getId).collect(Collectors.toList());
+    }
+}
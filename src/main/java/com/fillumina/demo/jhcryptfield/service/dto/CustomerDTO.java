@@ -0,0 +1,126 @@
+package com.fillumina.demo.jhcryptfield.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A DTO for the {@link com.fillumina.demo.jhcryptfield.domain.Customer} entity.
+ * <p>
+ * The cipher text of the address is never exposed, only the decrypted address.
+ * Missing values are omitted so that the fields not selected by the client
+ * (see {@link #FIELDS}) don't take space in the response.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CustomerDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String ID = "id";
+    public static final String FIRST_NAME = "firstName";
+    public static final String LAST_NAME = "lastName";
+    public static final String EMAIL = "email";
+    public static final String TELEPHONE = "telephone";
+    public static final String ADDRESS = "address";
+
+    /**
+     * The fields a client can select.
+     */
+    public static final Set<String> FIELDS = Set.of(ID, FIRST_NAME, LAST_NAME, EMAIL, TELEPHONE, ADDRESS);
+
+    private Long id;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String telephone;
+
+    private CustomerAddress address;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getTelephone() {
+        return telephone;
+    }
+
+    public void setTelephone(String telephone) {
+        this.telephone = telephone;
+    }
+
+    public CustomerAddress getAddress() {
+        return address;
+    }
+
+    public void setAddress(CustomerAddress address) {
+        this.address = address;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CustomerDTO)) {
+            return false;
+        }
+
+        CustomerDTO customerDTO = (CustomerDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, customerDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CustomerDTO{" +
+            "id=" + getId() +
+            ", firstName='" + getFirstName() + "'" +
+            ", lastName='" + getLastName() + "'" +
+            ", email='" + getEmail() + "'" +
+            ", telephone='" + getTelephone() + "'" +
+            ", address=" + getAddress() +
+            "}";
+    }
+}
@@ -0,0 +1,98 @@
+package com.fillumina.demo.jhcryptfield.service.mapper;
+
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.service.dto.CustomerDTO;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Customer} and its DTO {@link CustomerDTO}.
+ * <p>
+ * Mapping a customer to its DTO decrypts the address, decrypt the addresses
+ * of a list in a batch beforehand (see
+ * {@link com.fillumina.demo.jhcryptfield.security.BatchDecryptor}).
+ */
+@Mapper(componentModel = "spring", uses = {})
+public interface CustomerMapper extends EntityMapper<CustomerDTO, Customer> {
+    @Override
+    @Mapping(target = "addressRaw", ignore = true)
+    @Mapping(target = "addressRawBytes", ignore = true)
+    Customer toEntity(CustomerDTO customerDTO);
+
+    @Override
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "addressRaw", ignore = true)
+    @Mapping(target = "addressRawBytes", ignore = true)
+    void partialUpdate(@MappingTarget Customer customer, CustomerDTO customerDTO);
+
+    /**
+     * Replaces all the columns of the customer but the address.
+     */
+    @Named("updateColumns")
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "address", ignore = true)
+    @Mapping(target = "addressRaw", ignore = true)
+    @Mapping(target = "addressRawBytes", ignore = true)
+    void updateColumns(@MappingTarget Customer customer, CustomerDTO customerDTO);
+
+    /**
+     * Replaces the customer with the DTO, an address not given is kept (it
+     * has its own resource). An address with the same content doesn't cause
+     * any update.
+     */
+    default void update(Customer customer, CustomerDTO customerDTO) {
+        updateColumns(customer, customerDTO);
+        if (customerDTO.getAddress() != null) {
+            customer.setAddress(customerDTO.getAddress());
+        }
+    }
+
+    /**
+     * Maps the plain columns only, the encrypted fields are not read.
+     */
+    @Named("toDtoWithoutEncryptedFields")
+    @Mapping(target = "email", ignore = true)
+    @Mapping(target = "telephone", ignore = true)
+    @Mapping(target = "address", ignore = true)
+    CustomerDTO toDtoWithoutEncryptedFields(Customer customer);
+
+    /**
+     * Maps only the selected fields, the encrypted ones (email, telephone and
+     * address) are not even decrypted if they are not selected.
+     *
+     * @param fields the selected {@link CustomerDTO#FIELDS}, all of them if {@code null}.
+     */
+    default CustomerDTO toDto(Customer customer, Set<String> fields) {
+        if (fields == null) {
+            return toDto(customer);
+        }
+        CustomerDTO customerDTO = toDtoWithoutEncryptedFields(customer);
+        if (!fields.contains(CustomerDTO.ID)) {
+            customerDTO.setId(null);
+        }
+        if (!fields.contains(CustomerDTO.FIRST_NAME)) {
+            customerDTO.setFirstName(null);
+        }
+        if (!fields.contains(CustomerDTO.LAST_NAME)) {
+            customerDTO.setLastName(null);
+        }
+        if (fields.contains(CustomerDTO.EMAIL)) {
+            customerDTO.setEmail(customer.getEmail());
+        }
+        if (fields.contains(CustomerDTO.TELEPHONE)) {
+            customerDTO.setTelephone(customer.getTelephone());
+        }
+        if (fields.contains(CustomerDTO.ADDRESS)) {
+            customerDTO.setAddress(customer.getAddress());
+        }
+        return customerDTO;
+    }
+
+    default List<CustomerDTO> toDto(List<Customer> customers, Set<String> fields) {
+        return customers.stream().map(customer -> toDto(customer, fields)).collect(Collectors.toList());
+    }
+}
@@ -1,24 +1,46 @@
 package com.fillumina.demo.jhcryptfield.web.rest;
 
-import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddressIndex;
 import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository.AddressRaw;
+import com.fillumina.demo.jhcryptfield.security.BatchDecryptor;
+import com.fillumina.demo.jhcryptfield.security.BlindIndex;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
 import com.fillumina.demo.jhcryptfield.web.rest.errors.BadRequestAlertException;
+import com.fillumina.demo.jhcryptfield.web.rest.errors.PreconditionFailedException;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.PaginationUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
 /**
@@ -33,13 +55,37 @@ public class CustomerAddressResource {
 
     private static final String ENTITY_NAME = "customerAddress";
 
+    /**
+     * The number of addresses decrypted to answer a search.
+     */
+    public static final String DECRYPTED_COUNT_HEADER = "X-Decrypted-Count";
+
+    /**
+     * The maximum number of addresses decrypted to answer a range search.
+     */
+    public static final int MAX_RANGE_DECRYPTIONS = 1000;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final CustomerRepository customerRepository;
 
-    public CustomerAddressResource(CustomerRepository customerRepository) {
+    private final BatchDecryptor batchDecryptor;
+
+    private final ObjectMapper objectMapper;
+
+    private final BlindIndex blindIndex;
+
+    public CustomerAddressResource(
+        CustomerRepository customerRepository,
+        BatchDecryptor batchDecryptor,
+        ObjectMapper objectMapper,
+        BlindIndex blindIndex
+    ) {
         this.customerRepository = customerRepository;
+        this.batchDecryptor = batchDecryptor;
+        this.objectMapper = objectMapper;
+        this.blindIndex = blindIndex;
     }
 
     /**
@@ -64,18 +110,62 @@ public class CustomerAddressResource {
     }
 
     /**
-     * Save {@link CustomerAddress} by loading, updating and saving it's owner class.
-     * It's a bit convoluted but should work.
+     * Save {@link CustomerAddress} with a single update of the address column
+     * of its owner class, which is not loaded.
      *
      * @param customerAddress
      * @return
+     * @throws BadRequestAlertException if the owner doesn't exist.
      */
     private CustomerAddress saveCustomerAddress(CustomerAddress customerAddress) {
-        Customer customer = customerRepository.getById(customerAddress.getId());
-        customer.setAddress(customerAddress);
-        Customer savedCustomer = customerRepository.save(customer);
-        CustomerAddress result = savedCustomer.getAddress();
-        return result;
+        return saveCustomerAddress(customerAddress, EncryptedValue.of(customerAddress));
+    }
+
+    private CustomerAddress saveCustomerAddress(CustomerAddress customerAddress, EncryptedValue<CustomerAddress> encryptedAddress) {
+        if (customerRepository.updateAddress(customerAddress.getId(), encryptedAddress) == 0) {
+            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        }
+        return customerAddress;
+    }
+
+    /**
+     * Save {@link CustomerAddress} only if the stored one hasn't changed since
+     * it was checked against the {@code If-Match} header.
+     *
+     * @throws PreconditionFailedException if the stored address has been changed meanwhile.
+     */
+    private CustomerAddress replaceCustomerAddress(
+        CustomerAddress customerAddress,
+        EncryptedValue<CustomerAddress> storedAddress,
+        EncryptedValue<CustomerAddress> encryptedAddress
+    ) {
+        if (customerRepository.replaceAddress(customerAddress.getId(), storedAddress, encryptedAddress) == 0) {
+            throw new PreconditionFailedException(ENTITY_NAME);
+        }
+        return customerAddress;
+    }
+
+    private AddressRaw findAddressRaw(Long id) {
+        return customerRepository
+            .findAddressRawById(id)
+            .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+    }
+
+    /**
+     * The ETag of an address is computed from its cipher text so it can be
+     * checked without decrypting.
+     */
+    private static String eTag(EncryptedValue<CustomerAddress> encryptedAddress) {
+        return ETagUtil.of(encryptedAddress == null ? null : encryptedAddress.getCipherText());
+    }
+
+    /**
+     * @throws PreconditionFailedException if the address doesn't match the {@code If-Match} header.
+     */
+    private static void checkIfMatch(EncryptedValue<CustomerAddress> storedAddress, String ifMatch) {
+        if (!ETagUtil.matches(ifMatch, eTag(storedAddress))) {
+            throw new PreconditionFailedException(ENTITY_NAME);
+        }
     }
 
     /**
@@ -83,15 +173,18 @@ public class CustomerAddressResource {
      *
      * @param id the id of the customerAddress to save.
      * @param customerAddress the customerAddress to update.
+     * @param ifMatch the optional ETag the stored customerAddress must still have.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated customerAddress,
      * or with status {@code 400 (Bad Request)} if the customerAddress is not valid,
+     * or with status {@code 412 (Precondition Failed)} if the customerAddress has been modified meanwhile,
      * or with status {@code 500 (Internal Server Error)} if the customerAddress couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/customer-addresses/{id}")
     public ResponseEntity<CustomerAddress> updateCustomerAddress(
         @PathVariable(value = "id", required = false) final Long id,
-        @Valid @RequestBody CustomerAddress customerAddress
+        @Valid @RequestBody CustomerAddress customerAddress,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to update CustomerAddress : {}, {}", id, customerAddress);
         if (customerAddress.getId() == null) {
@@ -101,16 +194,25 @@ public class CustomerAddressResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!customerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        EncryptedValue<CustomerAddress> encryptedAddress = EncryptedValue.of(customerAddress);
+        EncryptedValue<CustomerAddress> storedAddress = findAddressRaw(id).getAddressRaw();
+        if (ifMatch != null) {
+            checkIfMatch(storedAddress, ifMatch);
+        }
+        // an identical address keeps its cipher text and the cached customer
+        if (storedAddress == null || !encryptedAddress.hasSameContent(storedAddress)) {
+            if (ifMatch == null) {
+                saveCustomerAddress(customerAddress, encryptedAddress);
+            } else {
+                replaceCustomerAddress(customerAddress, storedAddress, encryptedAddress);
+            }
         }
-
-        CustomerAddress result = saveCustomerAddress(customerAddress);
 
         return ResponseEntity
             .ok()
+            .eTag(eTag(encryptedAddress))
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, customerAddress.getId().toString()))
-            .body(result);
+            .body(customerAddress);
     }
 
     /**
@@ -118,16 +220,18 @@ public class CustomerAddressResource {
      *
      * @param id the id of the customerAddress to save.
      * @param customerAddress the customerAddress to update.
+     * @param ifMatch the optional ETag the stored customerAddress must still have.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated customerAddress,
-     * or with status {@code 400 (Bad Request)} if the customerAddress is not valid,
-     * or with status {@code 404 (Not Found)} if the customerAddress is not found,
+     * or with status {@code 400 (Bad Request)} if the customerAddress is not valid or not found,
+     * or with status {@code 412 (Precondition Failed)} if the customerAddress has been modified meanwhile,
      * or with status {@code 500 (Internal Server Error)} if the customerAddress couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/customer-addresses/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<CustomerAddress> partialUpdateCustomerAddress(
         @PathVariable(value = "id", required = false) final Long id,
-        @NotNull @RequestBody CustomerAddress customerAddress
+        @NotNull @RequestBody CustomerAddress customerAddress,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         log.debug("REST request to partial update CustomerAddress partially : {}, {}", id, customerAddress);
         if (customerAddress.getId() == null) {
@@ -137,71 +241,281 @@ public class CustomerAddressResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!customerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        // the stored address is only needed if some fields are missing or it must be checked
+        boolean partial =
+            customerAddress.getStreet() == null ||
+            customerAddress.getCity() == null ||
+            customerAddress.getPostcode() == null ||
+            customerAddress.getCountry() == null;
+        AddressRaw addressRaw = null;
+        EncryptedValue<CustomerAddress> stored = null;
+        if (partial || ifMatch != null) {
+            addressRaw = findAddressRaw(id);
+            stored = addressRaw.getAddressRaw();
+            if (ifMatch != null) {
+                checkIfMatch(stored, ifMatch);
+            }
+        }
+        CustomerAddress address = customerAddress;
+        if (partial) {
+            address = Optional.ofNullable(addressRaw.decrypt()).orElseGet(() -> new CustomerAddress().id(id));
+            if (customerAddress.getStreet() != null) {
+                address.setStreet(customerAddress.getStreet());
+            }
+            if (customerAddress.getCity() != null) {
+                address.setCity(customerAddress.getCity());
+            }
+            if (customerAddress.getPostcode() != null) {
+                address.setPostcode(customerAddress.getPostcode());
+            }
+            if (customerAddress.getCountry() != null) {
+                address.setCountry(customerAddress.getCountry());
+            }
         }
 
-        Optional<Customer> customerResult = customerRepository
-            .findById(customerAddress.getId())
-            .map(customer -> {
-                final CustomerAddress address = customer.getAddress();
-                if (customerAddress.getStreet() != null) {
-                    address.setStreet(customerAddress.getStreet());
-                }
-                if (customerAddress.getCity() != null) {
-                    address.setCity(customerAddress.getCity());
-                }
-                if (customerAddress.getPostcode() != null) {
-                    address.setPostcode(customerAddress.getPostcode());
-                }
-                if (customerAddress.getCountry() != null) {
-                    address.setCountry(customerAddress.getCountry());
-                }
-
-                return customer;
-            })
-            .map(customerRepository::save);
-
-        Optional<CustomerAddress> result = customerResult.isPresent() ? Optional.of(customerResult.get().getAddress()) : Optional.empty();
+        // updated only if something actually changed
+        EncryptedValue<CustomerAddress> encryptedAddress = EncryptedValue.of(address);
+        if (stored == null || !encryptedAddress.hasSameContent(stored)) {
+            if (ifMatch == null) {
+                saveCustomerAddress(address, encryptedAddress);
+            } else {
+                replaceCustomerAddress(address, stored, encryptedAddress);
+            }
+        }
 
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, customerAddress.getId().toString())
-        );
+        return ResponseEntity
+            .ok()
+            .eTag(eTag(encryptedAddress))
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, customerAddress.getId().toString()))
+            .body(address);
     }
 
     /**
      * {@code GET  /customer-addresses} : get all the customerAddresses.
+     * <p>
+     * Addresses are encrypted so the database can only sort them by id, any
+     * other sort criteria is ignored.
      *
+     * @param pageable the pagination information.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customerAddresses in body.
      */
     @GetMapping("/customer-addresses")
-    public List<CustomerAddress> getAllCustomerAddresses() {
-        log.debug("REST request to get all CustomerAddresses");
-        List<Customer> customerList = customerRepository.findAll();
-        return customerList.stream().map(c -> c.getAddress()).filter(a -> a != null).collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<CustomerAddress>> getAllCustomerAddresses(Pageable pageable) {
+        log.debug("REST request to get a page of CustomerAddresses");
+        Page<AddressRaw> page = customerRepository.findAllAddressRaw(sortedById(pageable));
+        batchDecryptor.decryptAll(page.getContent(), AddressRaw::getAddressRaw);
+        List<CustomerAddress> addresses = page
+            .getContent()
+            .stream()
+            .map(AddressRaw::decrypt)
+            .filter(a -> a != null)
+            .collect(Collectors.toList());
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(addresses);
+    }
+
+    /**
+     * {@code GET  /customer-addresses/_search?postcode=:postcode&country=:country} : search the customerAddresses.
+     * <p>
+     * The addresses are found by the blind indexes of their postcode and
+     * country (case and spaces are ignored), only the matching rows are read
+     * and decrypted: their number is returned in the
+     * {@value #DECRYPTED_COUNT_HEADER} header. Addresses are sorted by id.
+     *
+     * @param postcode the postcode of the addresses, optional.
+     * @param country the country of the addresses, optional.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customerAddresses in body,
+     * or with status {@code 400 (Bad Request)} if neither postcode nor country are given or the search is not enabled.
+     */
+    @GetMapping("/customer-addresses/_search")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<CustomerAddress>> searchCustomerAddresses(
+        @RequestParam(required = false) String postcode,
+        @RequestParam(required = false) String country,
+        Pageable pageable
+    ) {
+        log.debug("REST request to search a page of CustomerAddresses by postcode {} and country {}", postcode, country);
+        if (!blindIndex.isEnabled()) {
+            throw new BadRequestAlertException("Search not enabled", ENTITY_NAME, "searchdisabled");
+        }
+        if (postcode == null && country == null) {
+            throw new BadRequestAlertException("Missing search criteria", ENTITY_NAME, "searchcriteriamissing");
+        }
+        Page<AddressRaw> page = customerRepository.searchAddressRaw(postcode, country, sortedById(pageable));
+        int decrypted = batchDecryptor.decryptAll(page.getContent(), AddressRaw::getAddressRaw);
+        List<CustomerAddress> addresses = page
+            .getContent()
+            .stream()
+            .map(AddressRaw::decrypt)
+            .filter(a -> a != null)
+            .collect(Collectors.toList());
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        headers.add(DECRYPTED_COUNT_HEADER, Integer.toString(decrypted));
+        return ResponseEntity.ok().headers(headers).body(addresses);
+    }
+
+    /**
+     * {@code GET  /customer-addresses/_range?postcodeFrom=:from&postcodeTo=:to} : get a page of the customerAddresses
+     * with a postcode in the given range, bounds included.
+     * <p>
+     * The candidates are found by the blind index of the postcode prefix and
+     * read in id order, a page size at a time, then decrypted and filtered
+     * until the page is full: their number is returned in the
+     * {@value #DECRYPTED_COUNT_HEADER} header and never exceeds
+     * {@value #MAX_RANGE_DECRYPTIONS}, so a page may be shorter than requested.
+     * The following page is requested with the {@code afterId} of the
+     * {@code next} link, there is none on the last page. Postcodes are compared
+     * as strings, case and spaces are ignored.
+     *
+     * @param postcodeFrom the lowest postcode.
+     * @param postcodeTo the highest postcode.
+     * @param afterId the id after which the page starts, none for the first page.
+     * @param size the page size.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customerAddresses in body,
+     * or with status {@code 400 (Bad Request)} if the range or the size are not valid or the search is not enabled.
+     */
+    @GetMapping("/customer-addresses/_range")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<CustomerAddress>> getCustomerAddressesByPostcodeRange(
+        @RequestParam String postcodeFrom,
+        @RequestParam String postcodeTo,
+        @RequestParam(value = "afterId", required = false) Long afterId,
+        @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        log.debug("REST request to get a page of CustomerAddresses by postcode range {} - {}", postcodeFrom, postcodeTo);
+        if (blindIndex.getPostcodePrefixLength() == 0) {
+            throw new BadRequestAlertException("Range search not enabled", ENTITY_NAME, "searchdisabled");
+        }
+        if (size < 1 || size > MAX_RANGE_DECRYPTIONS) {
+            throw new BadRequestAlertException("Invalid page size", ENTITY_NAME, "sizeinvalid");
+        }
+        List<byte[]> prefixes;
+        try {
+            prefixes = CustomerAddressIndex.postcodePrefixRange(postcodeFrom, postcodeTo);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestAlertException(ex.getMessage(), ENTITY_NAME, "rangeinvalid");
+        }
+        List<CustomerAddress> addresses = new ArrayList<>(size);
+        long lastId = afterId == null ? Long.MIN_VALUE : afterId;
+        int read = 0;
+        int decrypted = 0;
+        boolean more = true;
+        while (more && addresses.size() < size && read < MAX_RANGE_DECRYPTIONS) {
+            int chunkSize = Math.min(size, MAX_RANGE_DECRYPTIONS - read);
+            List<AddressRaw> candidates = customerRepository.findAddressRawByPostcodePrefixIndexInAndIdGreaterThan(
+                prefixes,
+                lastId,
+                PageRequest.of(0, chunkSize)
+            );
+            read += candidates.size();
+            decrypted += batchDecryptor.decryptAll(candidates, AddressRaw::getAddressRaw);
+            more = candidates.size() == chunkSize;
+            for (AddressRaw candidate : candidates) {
+                if (addresses.size() == size) {
+                    // the rest of the chunk is read again by the next page
+                    more = true;
+                    break;
+                }
+                lastId = candidate.getId();
+                CustomerAddress address = candidate.decrypt();
+                if (address != null && CustomerAddressIndex.isPostcodeInRange(address.getPostcode(), postcodeFrom, postcodeTo)) {
+                    addresses.add(address);
+                }
+            }
+        }
+        ServletUriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromCurrentRequest();
+        StringBuilder link = new StringBuilder();
+        if (more) {
+            link.append(CustomerResource.keysetLink(uriBuilder.cloneBuilder().replaceQueryParam("afterId", lastId), "next"));
+            link.append(",");
+        }
+        link.append(CustomerResource.keysetLink(uriBuilder.cloneBuilder().replaceQueryParam("afterId"), "first"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.LINK, link.toString());
+        headers.add(DECRYPTED_COUNT_HEADER, Integer.toString(decrypted));
+        return ResponseEntity.ok().headers(headers).body(addresses);
+    }
+
+    private static Pageable sortedById(Pageable pageable) {
+        Sort.Order order = pageable.getSort().getOrderFor("id");
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), order == null ? Sort.by("id") : Sort.by(order));
+    }
+
+    /**
+     * {@code GET  /customer-addresses/_stream} : get all the customerAddresses, sorted by id.
+     * <p>
+     * Rows are fetched {@value CustomerRepository#STREAM_FETCH_SIZE} at a time
+     * and the decrypted addresses are written as soon as they are available
+     * so memory use doesn't depend on the number of customers.
+     *
+     * @param response the response the JSON array of customerAddresses is written to.
+     * @throws IOException if the response cannot be written.
+     */
+    @GetMapping("/customer-addresses/_stream")
+    @Transactional(readOnly = true)
+    public void streamAllCustomerAddresses(HttpServletResponse response) throws IOException {
+        log.debug("REST request to stream all CustomerAddresses");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (
+            Stream<AddressRaw> addresses = customerRepository.streamAllAddressRaw();
+            JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())
+        ) {
+            generator.writeStartArray();
+            List<AddressRaw> chunk = new ArrayList<>(CustomerRepository.STREAM_FETCH_SIZE);
+            Iterator<AddressRaw> iterator = addresses.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CustomerRepository.STREAM_FETCH_SIZE || !iterator.hasNext()) {
+                    batchDecryptor.decryptAll(chunk, AddressRaw::getAddressRaw);
+                    for (AddressRaw addressRaw : chunk) {
+                        CustomerAddress address = addressRaw.decrypt();
+                        if (address != null) {
+                            generator.writeObject(address);
+                        }
+                    }
+                    generator.flush();
+                    chunk.clear();
+                }
+            }
+            generator.writeEndArray();
+        }
     }
 
     /**
      * {@code GET  /customer-addresses/:id} : get the "id" customerAddress.
      *
+     * <p>
+     * The response has an ETag computed from the cipher text, a request with
+     * a matching {@code If-None-Match} header gets an empty
+     * {@code 304 (Not Modified)} response and the address is never decrypted.
+     *
      * @param id the id of the customerAddress to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the customerAddress, or with status {@code 404 (Not Found)}.
+     * @param request the request, to check the {@code If-None-Match} header.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the customerAddress,
+     * or with status {@code 304 (Not Modified)},
+     * or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/customer-addresses/{id}")
-    public ResponseEntity<CustomerAddress> getCustomerAddress(@PathVariable Long id) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<CustomerAddress> getCustomerAddress(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get CustomerAddress : {}", id);
-        Optional<Customer> customerOpt = customerRepository.findById(id);
-        Optional<CustomerAddress> customerAddressOpt;
-        if (customerOpt.isPresent()) {
-            Customer customer = customerOpt.get();
-            CustomerAddress customerAddress = customer.getAddress();
-            CustomerAddress address = customerAddress != null ? customerAddress : new CustomerAddress().id(id);
-            customerAddressOpt = Optional.of(address);
-        } else {
-            customerAddressOpt = Optional.empty();
-        }
-        return ResponseUtil.wrapOrNotFound(customerAddressOpt);
+        Optional<AddressRaw> addressRaw = customerRepository.findAddressRawById(id);
+        if (addressRaw.isPresent()) {
+            String eTag = eTag(addressRaw.get().getAddressRaw());
+            if (request.checkNotModified(eTag)) {
+                return null;
+            }
+            CustomerAddress customerAddress = addressRaw.get().decrypt();
+            // the browser must revalidate but can keep the body for a 304
+            return ResponseEntity
+                .ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(customerAddress != null ? customerAddress : new CustomerAddress().id(id));
+        }
+        return ResponseUtil.wrapOrNotFound(Optional.empty());
     }
 
     /**
@@ -2,23 +2,33 @@ package com.fillumina.demo.jhcryptfield.web.rest;
 
 import com.fillumina.demo.jhcryptfield.domain.Customer;
 import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.fillumina.demo.jhcryptfield.repository.KeysetCursor;
+import com.fillumina.demo.jhcryptfield.security.BatchDecryptor;
+import com.fillumina.demo.jhcryptfield.service.dto.CustomerDTO;
+import com.fillumina.demo.jhcryptfield.service.mapper.CustomerMapper;
 import com.fillumina.demo.jhcryptfield.web.rest.errors.BadRequestAlertException;
+import com.fillumina.demo.jhcryptfield.web.rest.errors.PreconditionFailedException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
 import tech.jhipster.web.util.ResponseUtil;
@@ -35,29 +45,38 @@ public class CustomerResource {
 
     private static final String ENTITY_NAME = "customer";
 
+    private static final int MAX_KEYSET_PAGE_SIZE = 2000;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final CustomerRepository customerRepository;
 
-    public CustomerResource(CustomerRepository customerRepository) {
+    private final CustomerMapper customerMapper;
+
+    private final BatchDecryptor batchDecryptor;
+
+    public CustomerResource(CustomerRepository customerRepository, CustomerMapper customerMapper, BatchDecryptor batchDecryptor) {
         this.customerRepository = customerRepository;
+        this.customerMapper = customerMapper;
+        this.batchDecryptor = batchDecryptor;
     }
 
     /**
      * {@code POST  /customers} : Create a new customer.
      *
-     * @param customer the customer to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new customer, or with status {@code 400 (Bad Request)} if the customer has already an ID.
+     * @param customerDTO the customerDTO to create.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new customerDTO, or with status {@code 400 (Bad Request)} if the customer has already an ID.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/customers")
-    public ResponseEntity<Customer> createCustomer(@RequestBody Customer customer) throws URISyntaxException {
-        log.debug("REST request to save Customer : {}", customer);
-        if (customer.getId() != null) {
+    public ResponseEntity<CustomerDTO> createCustomer(@RequestBody CustomerDTO customerDTO) throws URISyntaxException {
+        log.debug("REST request to save Customer : {}", customerDTO);
+        if (customerDTO.getId() != null) {
             throw new BadRequestAlertException("A new customer cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        Customer result = customerRepository.save(customer);
+        Customer customer = customerRepository.save(customerMapper.toEntity(customerDTO));
+        CustomerDTO result = customerMapper.toDto(customer);
         return ResponseEntity
             .created(new URI("/api/customers/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId().toString()))
@@ -67,58 +86,69 @@ public class CustomerResource {
     /**
      * {@code PUT  /customers/:id} : Updates an existing customer.
      *
-     * @param id the id of the customer to save.
-     * @param customer the customer to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated customer,
-     * or with status {@code 400 (Bad Request)} if the customer is not valid,
+     * <p>
+     * The address is stored encrypted and has its own resource, it is kept
+     * if the customerDTO doesn't have one.
+     *
+     * @param id the id of the customerDTO to save.
+     * @param customerDTO the customerDTO to update.
+     * @param ifMatch the optional ETag the stored customer must still have.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated customerDTO,
+     * or with status {@code 400 (Bad Request)} if the customerDTO is not valid,
+     * or with status {@code 412 (Precondition Failed)} if the customer has been modified meanwhile,
      * or with status {@code 500 (Internal Server Error)} if the customer couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/customers/{id}")
-    public ResponseEntity<Customer> updateCustomer(
+    public ResponseEntity<CustomerDTO> updateCustomer(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody Customer customer
+        @RequestBody CustomerDTO customerDTO,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
-        log.debug("REST request to update Customer : {}, {}", id, customer);
-        if (customer.getId() == null) {
+        log.debug("REST request to update Customer : {}, {}", id, customerDTO);
+        if (customerDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        if (!Objects.equals(id, customer.getId())) {
+        if (!Objects.equals(id, customerDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!customerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
-
-        Customer result = customerRepository.save(customer);
+        Customer customer = findForUpdate(id, ifMatch)
+            .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        customerMapper.update(customer, customerDTO);
+        // an unchanged address takes back the stored cipher text when flushed
+        Customer result = customerRepository.saveAndFlush(customer);
         return ResponseEntity
             .ok()
-            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, customer.getId().toString()))
-            .body(result);
+            .eTag(eTag(result))
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, customerDTO.getId().toString()))
+            .body(customerMapper.toDto(result));
     }
 
     /**
      * {@code PATCH  /customers/:id} : Partial updates given fields of an existing customer, field will ignore if it is null
      *
-     * @param id the id of the customer to save.
-     * @param customer the customer to update.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated customer,
-     * or with status {@code 400 (Bad Request)} if the customer is not valid,
+     * @param id the id of the customerDTO to save.
+     * @param customerDTO the customerDTO to update.
+     * @param ifMatch the optional ETag the stored customer must still have.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated customerDTO,
+     * or with status {@code 400 (Bad Request)} if the customerDTO is not valid,
      * or with status {@code 404 (Not Found)} if the customer is not found,
+     * or with status {@code 412 (Precondition Failed)} if the customer has been modified meanwhile,
      * or with status {@code 500 (Internal Server Error)} if the customer couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/customers/{id}", consumes = { "application/json", "application/merge-patch+json" })
-    public ResponseEntity<Customer> partialUpdateCustomer(
+    public ResponseEntity<CustomerDTO> partialUpdateCustomer(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody Customer customer
+        @RequestBody CustomerDTO customerDTO,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
-        log.debug("REST request to partial update Customer partially : {}, {}", id, customer);
-        if (customer.getId() == null) {
+        log.debug("REST request to partial update Customer partially : {}, {}", id, customerDTO);
+        if (customerDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        if (!Objects.equals(id, customer.getId())) {
+        if (!Objects.equals(id, customerDTO.getId())) {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
@@ -126,60 +156,190 @@ public class CustomerResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Optional<Customer> result = customerRepository
-            .findById(customer.getId())
+        Optional<Customer> result = findForUpdate(id, ifMatch)
             .map(existingCustomer -> {
-                if (customer.getFirstName() != null) {
-                    existingCustomer.setFirstName(customer.getFirstName());
-                }
-                if (customer.getLastName() != null) {
-                    existingCustomer.setLastName(customer.getLastName());
-                }
-                if (customer.getEmail() != null) {
-                    existingCustomer.setEmail(customer.getEmail());
-                }
-                if (customer.getTelephone() != null) {
-                    existingCustomer.setTelephone(customer.getTelephone());
-                }
-                if (customer.getAddressRaw() != null) {
-                    existingCustomer.setAddressRaw(customer.getAddressRaw());
-                }
+                customerMapper.partialUpdate(existingCustomer, customerDTO);
 
                 return existingCustomer;
             })
-            .map(customerRepository::save);
+            // an unchanged address takes back the stored cipher text when flushed
+            .map(customerRepository::saveAndFlush);
+
+        HttpHeaders headers = HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, customerDTO.getId().toString());
+        result.ifPresent(updatedCustomer -> headers.setETag(eTag(updatedCustomer)));
+        return ResponseUtil.wrapOrNotFound(result.map(customerMapper::toDto), headers);
+    }
 
-        return ResponseUtil.wrapOrNotFound(
-            result,
-            HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, customer.getId().toString())
+    /**
+     * @return the customer to update, locked and checked if there is an {@code If-Match} header.
+     * @throws PreconditionFailedException if the customer doesn't match the {@code If-Match} header.
+     */
+    private Optional<Customer> findForUpdate(Long id, String ifMatch) {
+        if (ifMatch == null) {
+            return customerRepository.findById(id);
+        }
+        return customerRepository.findByIdForUpdate(id).map(customer -> checkIfMatch(customer, ifMatch));
+    }
+
+    /**
+     * The ETag of a customer is computed from its stored columns, nothing is
+     * decrypted.
+     */
+    private static String eTag(Customer customer) {
+        return ETagUtil.of(
+            customer.getFirstName(),
+            customer.getLastName(),
+            customer.getEmailRawBytes(),
+            customer.getTelephoneRawBytes(),
+            customer.getAddressRawBytes()
         );
     }
 
+    /**
+     * @throws PreconditionFailedException if the customer doesn't match the {@code If-Match} header.
+     */
+    private static Customer checkIfMatch(Customer customer, String ifMatch) {
+        if (!ETagUtil.matches(ifMatch, eTag(customer))) {
+            throw new PreconditionFailedException(ENTITY_NAME);
+        }
+        return customer;
+    }
+
     /**
      * {@code GET  /customers} : get all the customers.
      *
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customers in body.
+     * @param fields the fields to return, all of them if none (see {@link CustomerDTO#FIELDS}).
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customers in body,
+     * or with status {@code 400 (Bad Request)} if the fields are not valid.
      */
     @GetMapping("/customers")
-    public ResponseEntity<List<Customer>> getAllCustomers(Pageable pageable) {
+    public ResponseEntity<List<CustomerDTO>> getAllCustomers(
+        Pageable pageable,
+        @RequestParam(value = "fields", required = false) Set<String> fields
+    ) {
         log.debug("REST request to get a page of Customers");
+        checkFields(fields);
         Page<Customer> page = customerRepository.findAll(pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
-        return ResponseEntity.ok().headers(headers).body(page.getContent());
+        return ResponseEntity.ok().headers(headers).body(toDto(page.getContent(), fields));
+    }
+
+    private static void checkFields(Set<String> fields) {
+        if (fields != null && !CustomerDTO.FIELDS.containsAll(fields)) {
+            throw new BadRequestAlertException("Invalid fields", ENTITY_NAME, "fieldsinvalid");
+        }
+    }
+
+    // the addresses are decrypted only if selected
+    private List<CustomerDTO> toDto(List<Customer> customers, Set<String> fields) {
+        if (fields == null || fields.contains(CustomerDTO.ADDRESS)) {
+            batchDecryptor.decryptAll(customers, Customer::getEncryptedAddress);
+        }
+        return customerMapper.toDto(customers, fields);
+    }
+
+    /**
+     * {@code GET  /customers/_keyset} : get a page of customers using keyset pagination.
+     * <p>
+     * The first page is sorted by the first order of {@code sort} (the id or
+     * one of {@link CustomerRepository#KEYSET_PROPERTIES}, then by id), the
+     * following ones are requested with the opaque cursor of the {@code next}
+     * link, which keeps the sort. Unlike {@link #getAllCustomers(Pageable, Set)}
+     * every page costs the same as the first one.
+     *
+     * @param cursor the cursor of the {@code next} link, none for the first page.
+     * @param size the page size.
+     * @param count whether the {@code X-Total-Count} header should be computed.
+     * @param sort the sort of the first page.
+     * @param fields the fields to return, all of them if none (see {@link CustomerDTO#FIELDS}).
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of customers in body,
+     * or with status {@code 400 (Bad Request)} if the cursor, the sort or the fields are not valid.
+     */
+    @GetMapping("/customers/_keyset")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<CustomerDTO>> getCustomersByKeyset(
+        @RequestParam(value = "cursor", required = false) String cursor,
+        @RequestParam(value = "size", defaultValue = "20") int size,
+        @RequestParam(value = "count", defaultValue = "true") boolean count,
+        Sort sort,
+        @RequestParam(value = "fields", required = false) Set<String> fields
+    ) {
+        log.debug("REST request to get a keyset page of Customers : {}", cursor);
+        if (size < 1 || size > MAX_KEYSET_PAGE_SIZE) {
+            throw new BadRequestAlertException("Invalid page size", ENTITY_NAME, "sizeinvalid");
+        }
+        checkFields(fields);
+        KeysetCursor keysetCursor;
+        try {
+            keysetCursor = cursor == null ? KeysetCursor.first(sort) : KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestAlertException("Invalid cursor or sort", ENTITY_NAME, "cursorinvalid");
+        }
+        // checked here as the repository exceptions are translated to data access ones
+        if (!keysetCursor.isById() && !CustomerRepository.KEYSET_PROPERTIES.containsKey(keysetCursor.getProperty())) {
+            throw new BadRequestAlertException("Invalid cursor or sort", ENTITY_NAME, "cursorinvalid");
+        }
+        // one more to know if there is a next page
+        List<Customer> customers = customerRepository.findAfter(keysetCursor, size + 1);
+
+        ServletUriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromCurrentRequest();
+        HttpHeaders headers = new HttpHeaders();
+        StringBuilder link = new StringBuilder();
+        if (customers.size() > size) {
+            customers = customers.subList(0, size);
+            Customer last = customers.get(size - 1);
+            String value = keysetCursor.isById()
+                ? null
+                : CustomerRepository.KEYSET_PROPERTIES.get(keysetCursor.getProperty()).apply(last);
+            String next = keysetCursor.next(last.getId(), value).encode();
+            link.append(keysetLink(uriBuilder.cloneBuilder().replaceQueryParam("sort").replaceQueryParam("cursor", next), "next"));
+            link.append(",");
+        }
+        link.append(keysetLink(uriBuilder.cloneBuilder().replaceQueryParam("cursor"), "first"));
+        headers.add(HttpHeaders.LINK, link.toString());
+        if (count) {
+            headers.add("X-Total-Count", Long.toString(customerRepository.count()));
+        }
+        return ResponseEntity.ok().headers(headers).body(toDto(customers, fields));
+    }
+
+    // same format of PaginationUtil
+    static String keysetLink(UriComponentsBuilder uriBuilder, String relType) {
+        return "<" + uriBuilder.toUriString().replace(",", "%2C").replace(";", "%3B") + ">; rel=\"" + relType + "\"";
     }
 
     /**
      * {@code GET  /customers/:id} : get the "id" customer.
      *
+     * <p>
+     * The response has an ETag computed without decrypting any field, a
+     * request with a matching {@code If-None-Match} header gets an empty
+     * {@code 304 (Not Modified)} response and nothing is ever decrypted.
+     *
      * @param id the id of the customer to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the customer, or with status {@code 404 (Not Found)}.
+     * @param request the request, to check the {@code If-None-Match} header.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the customerDTO,
+     * or with status {@code 304 (Not Modified)},
+     * or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/customers/{id}")
-    public ResponseEntity<Customer> getCustomer(@PathVariable Long id) {
+    public ResponseEntity<CustomerDTO> getCustomer(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Customer : {}", id);
         Optional<Customer> customer = customerRepository.findById(id);
-        return ResponseUtil.wrapOrNotFound(customer);
+        if (customer.isPresent()) {
+            String eTag = eTag(customer.get());
+            if (request.checkNotModified(eTag)) {
+                return null;
+            }
+            // the browser must revalidate but can keep the body for a 304
+            return ResponseEntity
+                .ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(customerMapper.toDto(customer.get()));
+        }
+        return ResponseUtil.wrapOrNotFound(Optional.empty());
     }
 
     /**
@@ -0,0 +1,73 @@
+package com.fillumina.demo.jhcryptfield.web.rest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Strong entity tags computed from the stored values of a resource, cipher
+ * texts included, so that they can be compared without decrypting anything.
+ * A cipher text changes whenever its plain text changes (and is kept when an
+ * unchanged value is saved again) so it is a valid strong validator.
+ *
+ * @author Francesco Illuminati <fillumina@gmail.com>
+ */
+public final class ETagUtil {
+
+    private static final String DIGEST_ALGO = "SHA-256";
+
+    // 128 bits are more than enough to tell versions of the same resource apart
+    private static final int TAG_LENGTH = 16;
+
+    private ETagUtil() {}
+
+    /**
+     * @param values byte arrays are hashed as they are, any other value by
+     * its string representation, {@code null}s are allowed.
+     * @return the quoted strong entity tag of the given values.
+     */
+    public static String of(Object... values) {
+        MessageDigest md = messageDigest();
+        for (Object value : values) {
+            byte[] bytes = value == null ? null : value instanceof byte[] ? (byte[]) value : value.toString().getBytes(UTF_8);
+            // the length prefix keeps ("ab", "c") and ("a", "bc") apart
+            int length = bytes == null ? -1 : bytes.length;
+            md.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+            if (bytes != null) {
+                md.update(bytes);
+            }
+        }
+        byte[] digest = md.digest();
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, TAG_LENGTH)) + '"';
+    }
+
+    /**
+     * Evaluates an {@code If-Match} header with the strong comparison
+     * required by RFC 7232: weak tags never match, {@code *} matches any
+     * existing resource.
+     *
+     * @param ifMatch the header value, may list several tags separated by commas.
+     * @param etag the current tag of the resource.
+     */
+    public static boolean matches(String ifMatch, String etag) {
+        for (String tag : ifMatch.split(",")) {
+            String trimmed = tag.trim();
+            if ("*".equals(trimmed) || (!trimmed.startsWith("W/") && trimmed.equals(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MessageDigest messageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGO);
+        } catch (NoSuchAlgorithmException ex) {
+            // every JVM must support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
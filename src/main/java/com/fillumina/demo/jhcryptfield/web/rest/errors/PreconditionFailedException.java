@@ -0,0 +1,26 @@
+package com.fillumina.demo.jhcryptfield.web.rest.errors;
+
+import java.util.Map;
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+/**
+ * The {@code If-Match} header of a request doesn't match the current version
+ * of the resource, which has been modified meanwhile.
+ */
+public class PreconditionFailedException extends AbstractThrowableProblem {
+
+    private static final long serialVersionUID = 1L;
+
+    public PreconditionFailedException(String entityName) {
+        super(
+            ErrorConstants.DEFAULT_TYPE,
+            "The " + entityName + " has been modified",
+            Status.PRECONDITION_FAILED,
+            null,
+            null,
+            null,
+            Map.of("message", ErrorConstants.ERR_PRECONDITION_FAILED, "params", entityName)
+        );
+    }
+}
@@ -6,7 +6,6 @@ export interface ICustomer {
   lastName?: string | null;
   email?: string | null;
   telephone?: string | null;
-  addressRaw?: string | null;
   address?: ICustomerAddress | null;
 }
 
@@ -17,7 +16,6 @@ export class Customer implements ICustomer {
     public lastName?: string | null,
     public email?: string | null,
     public telephone?: string | null,
-    public addressRaw?: string | null,
     public address?: ICustomerAddress | null
   ) {}
 }
@@ -25,7 +25,6 @@ describe('Customer Service', () => {
       lastName: 'AAAAAAA',
       email: 'AAAAAAA',
       telephone: 'AAAAAAA',
-      addressRaw: 'AAAAAAA',
     };
   });
 
@@ -65,7 +64,6 @@ describe('Customer Service', () => {
           lastName: 'BBBBBB',
           email: 'BBBBBB',
           telephone: 'BBBBBB',
-          addressRaw: 'BBBBBB',
         },
         elemDefault
       );
@@ -84,7 +82,6 @@ describe('Customer Service', () => {
         {
           firstName: 'BBBBBB',
           email: 'BBBBBB',
-          addressRaw: 'BBBBBB',
         },
         new Customer()
       );
@@ -108,7 +105,6 @@ describe('Customer Service', () => {
           lastName: 'BBBBBB',
           email: 'BBBBBB',
           telephone: 'BBBBBB',
-          addressRaw: 'BBBBBB',
         },
         elemDefault
       );
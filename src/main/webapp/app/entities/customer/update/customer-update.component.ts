@@ -28,7 +28,6 @@ export class CustomerUpdateComponent implements OnInit {
     lastName: [],
     email: [],
     telephone: [],
-    addressRaw: [],
     address: [],
   });
 
@@ -108,7 +107,6 @@ export class CustomerUpdateComponent implements OnInit {
       lastName: customer.lastName,
       email: customer.email,
       telephone: customer.telephone,
-      addressRaw: customer.addressRaw,
       address: customer.address,
     });
 
@@ -138,7 +136,6 @@ export class CustomerUpdateComponent implements OnInit {
       lastName: this.editForm.get(['lastName'])!.value,
       email: this.editForm.get(['email'])!.value,
       telephone: this.editForm.get(['telephone'])!.value,
-      addressRaw: this.editForm.get(['addressRaw'])!.value,
       address: this.editForm.get(['address'])!.value,
     };
   }
@@ -0,0 +1,78 @@
+package com.fillumina.demo.jhcryptfield.benchmark;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.BatchDecryptor;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import com.fillumina.demo.jhcryptfield.security.EncryptionKeyRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Latency of decrypting a page of addresses one at a time against the
+ * {@link BatchDecryptor}, by page size. Each invocation gets freshly loaded
+ * values, as a request would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchDecryptorBenchmark {
+
+    @Param({ "10", "50", "200", "1000" })
+    private int pageSize;
+
+    private BatchDecryptor batchDecryptor;
+    private byte[][] cipherTexts;
+    private List<EncryptedValue<CustomerAddress>> page;
+
+    @Setup
+    public void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("password");
+        properties.getFieldEncryptionSecret().setSalt("salt");
+        new EncryptionKeyRegistry(properties, Runnable::run);
+        batchDecryptor = new BatchDecryptor(properties);
+        cipherTexts = new byte[pageSize][];
+        for (int i = 0; i < pageSize; i++) {
+            CustomerAddress address = new CustomerAddress().street("Via Roma " + i).city("Roma").postcode("00193").country("IT");
+            cipherTexts[i] = EncryptedValue.of(address).getCipherText();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void load() {
+        page = new ArrayList<>(pageSize);
+        for (byte[] cipherText : cipherTexts) {
+            page.add(EncryptedValue.ofCipherText(cipherText, CustomerAddress.class));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchDecryptor.shutdown();
+    }
+
+    @Benchmark
+    public List<EncryptedValue<CustomerAddress>> sequential() {
+        page.forEach(EncryptedValue::get);
+        return page;
+    }
+
+    @Benchmark
+    public List<EncryptedValue<CustomerAddress>> batch() {
+        batchDecryptor.decryptAll(page);
+        return page;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BatchDecryptorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,77 @@
+package com.fillumina.demo.jhcryptfield.benchmark;
+
+import com.fillumina.demo.jhcryptfield.security.CipherPool;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a {@link Cipher} created for each operation against one borrowed from a {@link CipherPool}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CipherPoolBenchmark {
+
+    private static final String ADDRESS_JSON = "{\"id\":null,\"street\":\"Via Roma 1\",\"city\":\"Milano\",\"postcode\":\"20100\",\"country\":\"IT\"}";
+
+    private SecretKey key;
+    private byte[] plainText;
+    private CipherPool pool;
+
+    /** GCM forbids to reuse an IV with the same key so each thread counts its own. */
+    @State(Scope.Thread)
+    public static class Nonce {
+
+        private final ByteBuffer iv = ByteBuffer.allocate(EncryptionUtils.IV_LENGTH_BYTE);
+        private long counter;
+
+        @Setup
+        public void setup() {
+            iv.putInt(0, (int) Thread.currentThread().getId());
+        }
+
+        GCMParameterSpec next() {
+            iv.putLong(4, ++counter);
+            return new GCMParameterSpec(EncryptionUtils.TAG_LENGTH_BIT, iv.array());
+        }
+    }
+
+    @Setup
+    public void setup() {
+        key = EncryptionUtils.getAESKeyFromPassword("password".toCharArray(), "salt".getBytes(StandardCharsets.UTF_8));
+        plainText = ADDRESS_JSON.getBytes(StandardCharsets.UTF_8);
+        pool = new CipherPool(EncryptionUtils.ENCRYPT_ALGO, EncryptionUtils.CIPHER_POOL_SIZE);
+    }
+
+    @Benchmark
+    public byte[] perCallCipher(Nonce nonce) throws Exception {
+        Cipher cipher = Cipher.getInstance(EncryptionUtils.ENCRYPT_ALGO);
+        cipher.init(Cipher.ENCRYPT_MODE, key, nonce.next());
+        return cipher.doFinal(plainText);
+    }
+
+    @Benchmark
+    public byte[] pooledCipher(Nonce nonce) throws Exception {
+        Cipher cipher = pool.borrow(Cipher.ENCRYPT_MODE, key, nonce.next());
+        byte[] cipherText = cipher.doFinal(plainText);
+        pool.release(cipher);
+        return cipherText;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CipherPoolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
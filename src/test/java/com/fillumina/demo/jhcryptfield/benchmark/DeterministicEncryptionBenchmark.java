@@ -0,0 +1,77 @@
+package com.fillumina.demo.jhcryptfield.benchmark;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.security.DeterministicCipherEngine;
+import com.fillumina.demo.jhcryptfield.security.EncryptionKeyRegistry;
+import com.fillumina.demo.jhcryptfield.security.KeyRingCipherEngine;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the randomized AES-GCM of {@link KeyRingCipherEngine} against the
+ * deterministic AES-SIV of {@link DeterministicCipherEngine}, which needs two
+ * passes over the plain text (S2V and CTR) and is not hardware accelerated as
+ * a whole, on an email sized and on an address sized plain text.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeterministicEncryptionBenchmark {
+
+    @Param(
+        {
+            "\"mario.rossi@example.com\"",
+            "{\"street\":\"Via della Conciliazione 1\",\"city\":\"Roma\",\"postcode\":\"00193\",\"country\":\"IT\"}",
+        }
+    )
+    private String value;
+
+    private final KeyRingCipherEngine randomized = new KeyRingCipherEngine();
+    private final DeterministicCipherEngine deterministic = new DeterministicCipherEngine();
+
+    private byte[] plainText;
+    private byte[] randomizedCipherText;
+    private byte[] deterministicCipherText;
+
+    @Setup
+    public void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("password");
+        properties.getFieldEncryptionSecret().setSalt("salt");
+        new EncryptionKeyRegistry(properties, Runnable::run);
+        plainText = value.getBytes(StandardCharsets.UTF_8);
+        randomizedCipherText = randomized.encrypt(plainText);
+        deterministicCipherText = deterministic.encrypt(plainText);
+    }
+
+    @Benchmark
+    public byte[] randomizedEncrypt() {
+        return randomized.encrypt(plainText);
+    }
+
+    @Benchmark
+    public byte[] deterministicEncrypt() {
+        return deterministic.encrypt(plainText);
+    }
+
+    @Benchmark
+    public byte[] randomizedDecrypt() {
+        return randomized.decrypt(randomizedCipherText);
+    }
+
+    @Benchmark
+    public byte[] deterministicDecrypt() {
+        return deterministic.decrypt(deterministicCipherText);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DeterministicEncryptionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.fillumina.demo.jhcryptfield.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.EncryptionHelper;
+import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.IdSettable;
+import com.fillumina.demo.jhcryptfield.security.EncryptionKeyRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the whole encryption of a {@link CustomerAddress} done by passing
+ * through a JSON {@link String} against the byte level pipeline of
+ * {@link EncryptionHelper} using the reusable plain text buffers. Run it with
+ * the GC profiler (the default of the benchmark profile) to compare the
+ * allocation rates ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionPipelineBenchmark {
+
+    @JsonIgnoreProperties("id")
+    private abstract static class IgnoreIdMixIn {}
+
+    private ObjectMapper objectMapper;
+    private EncryptionHelper<CustomerAddress> helper;
+    private CustomerAddress address;
+    private byte[] stringCipherText;
+    private byte[] cipherText;
+
+    @Setup
+    public void setup() throws IOException {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("password");
+        properties.getFieldEncryptionSecret().setSalt("salt");
+        new EncryptionKeyRegistry(properties, Runnable::run);
+        objectMapper = new ObjectMapper();
+        objectMapper.addMixIn(IdSettable.class, IgnoreIdMixIn.class);
+        helper = new EncryptionHelper<>(CustomerAddress.class);
+        address = new CustomerAddress().street("Via della Conciliazione 1").city("Roma").postcode("00193").country("IT");
+        stringCipherText = helper.encrypt(objectMapper.writeValueAsString(address));
+        cipherText = helper.encryptObject(address);
+    }
+
+    @Benchmark
+    public byte[] stringEncrypt() throws IOException {
+        return helper.encrypt(objectMapper.writeValueAsString(address));
+    }
+
+    @Benchmark
+    public byte[] bytesEncrypt() {
+        return helper.encryptObject(address);
+    }
+
+    @Benchmark
+    public CustomerAddress stringDecrypt() throws IOException {
+        return objectMapper.readValue(helper.decrypt(stringCipherText), CustomerAddress.class);
+    }
+
+    @Benchmark
+    public CustomerAddress bytesDecrypt() {
+        return helper.decryptObject(null, null, cipherText);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+            new OptionsBuilder().include(EncryptionPipelineBenchmark.class.getSimpleName()).addProfiler("gc").build()
+        )
+            .run();
+    }
+}
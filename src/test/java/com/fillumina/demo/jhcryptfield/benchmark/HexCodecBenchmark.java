@@ -0,0 +1,85 @@
+package com.fillumina.demo.jhcryptfield.benchmark;
+
+import com.fillumina.demo.jhcryptfield.security.HexCodec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the table driven {@link HexCodec} against the previous {@code String.format} and
+ * {@code substring} based implementation of {@code EncryptionUtils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HexCodecBenchmark {
+
+    // a typical encrypted address: IV + JSON + GCM tag
+    @Param({ "128", "1024" })
+    private int size;
+
+    private byte[] bytes;
+    private String hex;
+    private char[] chars;
+    private byte[] decoded;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        hex = HexCodec.encode(bytes);
+        chars = new char[size * 2];
+        decoded = new byte[size];
+    }
+
+    @Benchmark
+    public String formatEncode() {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    @Benchmark
+    public String tableEncode() {
+        return HexCodec.encode(bytes);
+    }
+
+    @Benchmark
+    public char[] tableEncodeIntoArray() {
+        HexCodec.encode(bytes, 0, bytes.length, chars, 0);
+        return chars;
+    }
+
+    @Benchmark
+    public byte[] substringDecode() {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < hex.length(); i += 2) {
+            String pair = hex.substring(i, i + 2);
+            result[i / 2] = (byte) ((Character.digit(pair.charAt(0), 16) << 4) + Character.digit(pair.charAt(1), 16));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public byte[] tableDecode() {
+        return HexCodec.decode(hex);
+    }
+
+    @Benchmark
+    public byte[] tableDecodeIntoArray() {
+        HexCodec.decode(hex, 0, hex.length(), decoded, 0);
+        return decoded;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HexCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.fillumina.demo.jhcryptfield.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.BinaryPayloadCodec;
+import com.fillumina.demo.jhcryptfield.security.EncryptionHelper.IdSettable;
+import com.fillumina.demo.jhcryptfield.security.JsonPayloadCodec;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the JSON encoding of {@link CustomerAddress} done by Jackson databind
+ * against the codec generated at build time, used by {@link JsonPayloadCodec},
+ * and against the compact binary format of {@link BinaryPayloadCodec}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadCodecBenchmark {
+
+    @JsonIgnoreProperties("id")
+    private abstract static class IgnoreIdMixIn {}
+
+    private ObjectMapper objectMapper;
+    private JsonPayloadCodec codec;
+    private BinaryPayloadCodec binaryCodec;
+    private CustomerAddress address;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper();
+        objectMapper.addMixIn(IdSettable.class, IgnoreIdMixIn.class);
+        codec = new JsonPayloadCodec();
+        address = new CustomerAddress().street("Via della Conciliazione 1").city("Roma").postcode("00193").country("IT");
+        json = objectMapper.writeValueAsBytes(address);
+        binaryCodec = new BinaryPayloadCodec();
+        binary = binaryCodec.encode(address);
+    }
+
+    @Benchmark
+    public byte[] databindEncode() throws IOException {
+        return objectMapper.writeValueAsBytes(address);
+    }
+
+    @Benchmark
+    public byte[] generatedEncode() {
+        return codec.encode(address);
+    }
+
+    @Benchmark
+    public CustomerAddress databindDecode() throws IOException {
+        return objectMapper.readValue(json, CustomerAddress.class);
+    }
+
+    @Benchmark
+    public CustomerAddress generatedDecode() {
+        return codec.decode(json, CustomerAddress.class);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return binaryCodec.encode(address);
+    }
+
+    @Benchmark
+    public CustomerAddress binaryDecode() {
+        return binaryCodec.decode(binary, CustomerAddress.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PayloadCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fillumina.demo.jhcryptfield.IntegrationTest;
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.EncryptedValue;
+import com.fillumina.demo.jhcryptfield.service.CustomerContactEncryptionService;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the finders of {@link CustomerRepository} on encrypted values.
+ */
+@IntegrationTest
+@Transactional
+class CustomerRepositoryIT {
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CustomerContactEncryptionService customerContactEncryptionService;
+
+    @Autowired
+    private EntityManager em;
+
+    private Customer customer;
+
+    @BeforeEach
+    public void initTest() {
+        customer =
+            customerRepository.saveAndFlush(
+                new Customer()
+                    .firstName("AAAAAAAAAA")
+                    .lastName("AAAAAAAAAA")
+                    .email("mario.rossi@example.com")
+                    .telephone("+39 06 1234567")
+                    .address(new CustomerAddress().street("1 Main St").city("Saint  Paul").postcode("ab1 2cd").country("gb"))
+            );
+    }
+
+    @Test
+    void findByNormalizedValues() {
+        assertThat(customerRepository.findAllByAddressPostcode("AB12CD")).containsExactly(customer);
+        assertThat(customerRepository.findAllByAddressCountry(" GB")).containsExactly(customer);
+        assertThat(customerRepository.findAllByAddressCity("saint paul")).containsExactly(customer);
+        assertThat(customerRepository.findAllByAddressCity("Saint Pau")).isEmpty();
+    }
+
+    @Test
+    void fieldsHaveDifferentIndexes() {
+        customerRepository.saveAndFlush(
+            new Customer().firstName("BBBBBBBBBB").lastName("BBBBBBBBBB").address(new CustomerAddress().city("GB").country("FR"))
+        );
+        assertThat(customerRepository.findAllByAddressCountry("GB")).containsExactly(customer);
+    }
+
+    @Test
+    void findByDeterministicallyEncryptedValues() {
+        assertThat(customerRepository.findAllByEmail("mario.rossi@example.com")).containsExactly(customer);
+        assertThat(customerRepository.findAllByTelephone("+39 06 1234567")).containsExactly(customer);
+        assertThat(customerRepository.findAllByEmail("mario.rossi@example.org")).isEmpty();
+    }
+
+    @Test
+    void plainContactsAreEncrypted() {
+        em
+            .createNativeQuery(
+                "update customer set email = null, email_plain = :email, telephone = null, telephone_plain = :telephone where id = :id"
+            )
+            .setParameter("email", "luigi.verdi@example.com")
+            .setParameter("telephone", "+39 02 7654321")
+            .setParameter("id", customer.getId())
+            .executeUpdate();
+        em.clear();
+        assertThat(customerRepository.findById(customer.getId()).orElseThrow().getEmail()).isEqualTo("luigi.verdi@example.com");
+        assertThat(customerRepository.findAllByEmail("luigi.verdi@example.com")).isEmpty();
+
+        assertThat(customerContactEncryptionService.encryptAll()).isEqualTo(1);
+        em.flush();
+        em.clear();
+
+        assertThat(customerRepository.findAllByEmail("luigi.verdi@example.com"))
+            .extracting(Customer::getId)
+            .containsExactly(customer.getId());
+        assertThat(customerRepository.findAllByTelephone("+39 02 7654321"))
+            .extracting(Customer::getId)
+            .containsExactly(customer.getId());
+        assertThat(customerContactEncryptionService.encryptAll()).isZero();
+    }
+
+    @Test
+    void addressUpdateChangesIndexes() {
+        customerRepository.updateAddress(customer.getId(), EncryptedValue.of(new CustomerAddress().postcode("EF3 4GH")));
+        em.clear();
+        assertThat(customerRepository.findAllByAddressPostcode("AB1 2CD")).isEmpty();
+        assertThat(customerRepository.findAllByAddressPostcode("EF3 4GH")).extracting(Customer::getId).containsExactly(customer.getId());
+        assertThat(customerRepository.findAllByAddressCountry("GB")).isEmpty();
+    }
+}
@@ -0,0 +1,59 @@
+package com.fillumina.demo.jhcryptfield.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Test class for the {@link KeysetCursor}.
+ */
+class KeysetCursorTest {
+
+    @Test
+    void firstPageIsSortedByIdByDefault() {
+        KeysetCursor cursor = KeysetCursor.first(Sort.unsorted());
+
+        assertThat(cursor.isById()).isTrue();
+        assertThat(cursor.isFirst()).isTrue();
+        assertThat(cursor.getDirection()).isEqualTo(Sort.Direction.ASC);
+    }
+
+    @Test
+    void encodeAndDecode() {
+        KeysetCursor cursor = KeysetCursor.first(Sort.by(Sort.Direction.DESC, "lastName")).next(42L, "Rossi, Mario");
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded.getProperty()).isEqualTo("lastName");
+        assertThat(decoded.getDirection()).isEqualTo(Sort.Direction.DESC);
+        assertThat(decoded.getLastId()).isEqualTo(42L);
+        assertThat(decoded.getLastValue()).isEqualTo("Rossi, Mario");
+    }
+
+    @Test
+    void nullAndEmptyValuesAreKeptApart() {
+        KeysetCursor sort = KeysetCursor.first(Sort.by("lastName"));
+
+        assertThat(KeysetCursor.decode(sort.next(1L, null).encode()).getLastValue()).isNull();
+        assertThat(KeysetCursor.decode(sort.next(1L, "").encode()).getLastValue()).isEmpty();
+    }
+
+    @Test
+    void encodeAndDecodeById() {
+        KeysetCursor cursor = KeysetCursor.first(Sort.by("id")).next(7L, "ignored");
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded.isById()).isTrue();
+        assertThat(decoded.getLastId()).isEqualTo(7L);
+        assertThat(decoded.getLastValue()).isNull();
+    }
+
+    @Test
+    void invalidCursor() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode("aWQsQVND")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
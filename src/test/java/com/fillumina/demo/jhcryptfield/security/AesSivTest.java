@@ -0,0 +1,77 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the deterministic encryption of {@link EncryptionUtils} (see {@link AesSiv}).
+ */
+class AesSivTest {
+
+    private static final byte[] HEADER = CipherTextHeader.create(1, CipherTextHeader.ALGORITHM_AES_SIV);
+
+    private final AesSiv.Key key = AesSiv.Key.derive(
+        EncryptionUtils.getAESKeyFromPassword("password".toCharArray(), "salt".getBytes(StandardCharsets.UTF_8))
+    );
+
+    private static byte[] hex(String hex) {
+        return HexCodec.decode(hex.replace(" ", ""));
+    }
+
+    @Test
+    void rfc5297DeterministicVector() {
+        AesSiv.Key rfcKey = new AesSiv.Key(hex("fffefdfc fbfaf9f8 f7f6f5f4 f3f2f1f0 f0f1f2f3 f4f5f6f7 f8f9fafb fcfdfeff"));
+        byte[] ad = hex("10111213 14151617 18191a1b 1c1d1e1f 20212223 24252627");
+        byte[] plainText = hex("11223344 55667788 99aabbcc ddee");
+
+        byte[] cipherText = EncryptionUtils.encryptDeterministic(plainText, rfcKey, ad);
+
+        assertThat(HexCodec.encode(cipherText))
+            .isEqualTo(HexCodec.encode(ad) + "85632d07c6e8f37f950acd320a2ecc9340c02b9690c4dc04daef7f6afe5c");
+        assertThat(EncryptionUtils.decryptDeterministic(cipherText, ad.length, rfcKey)).isEqualTo(plainText);
+    }
+
+    @Test
+    void encryptionIsDeterministic() {
+        byte[] plainText = "mario.rossi@example.com".getBytes(StandardCharsets.UTF_8);
+
+        byte[] cipherText = EncryptionUtils.encryptDeterministic(plainText, key, HEADER);
+
+        assertThat(EncryptionUtils.encryptDeterministic(plainText, key, HEADER)).isEqualTo(cipherText);
+        assertThat(EncryptionUtils.encryptDeterministic("mario.rossi@example.org".getBytes(StandardCharsets.UTF_8), key, HEADER))
+            .isNotEqualTo(cipherText);
+        assertThat(EncryptionUtils.decryptDeterministic(cipherText, HEADER.length, key)).isEqualTo(plainText);
+    }
+
+    @Test
+    void encryptAndDecryptAnyLength() {
+        for (int length : new int[] { 0, 1, 15, 16, 17, 32, 100 }) {
+            byte[] plainText = new byte[length];
+            for (int i = 0; i < length; i++) {
+                plainText[i] = (byte) i;
+            }
+            byte[] cipherText = EncryptionUtils.encryptDeterministic(plainText, key, HEADER);
+            assertThat(cipherText).hasSize(HEADER.length + AesSiv.SIV_LENGTH_BYTE + length);
+            assertThat(EncryptionUtils.decryptDeterministic(cipherText, HEADER.length, key)).isEqualTo(plainText);
+        }
+    }
+
+    @Test
+    void tamperingIsDetected() {
+        byte[] cipherText = EncryptionUtils.encryptDeterministic("0123456789".getBytes(StandardCharsets.UTF_8), key, HEADER);
+
+        byte[] tamperedCipherText = cipherText.clone();
+        tamperedCipherText[tamperedCipherText.length - 1] ^= 1;
+        assertThatThrownBy(() -> EncryptionUtils.decryptDeterministic(tamperedCipherText, HEADER.length, key))
+            .isInstanceOf(EncryptionException.class);
+
+        byte[] tamperedHeader = cipherText.clone();
+        tamperedHeader[2] ^= 1;
+        assertThatThrownBy(() -> EncryptionUtils.decryptDeterministic(tamperedHeader, HEADER.length, key))
+            .isInstanceOf(EncryptionException.class);
+    }
+}
@@ -0,0 +1,101 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link BatchDecryptor}.
+ */
+class BatchDecryptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BatchDecryptor batchDecryptor;
+
+    @BeforeEach
+    void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("password");
+        properties.getFieldEncryptionSecret().setSalt("salt");
+        properties.getFieldEncryption().getBatch().setThreshold(4);
+        properties.getFieldEncryption().getBatch().setParallelism(2);
+        new EncryptionKeyRegistry(properties, Runnable::run);
+        batchDecryptor = new BatchDecryptor(properties);
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchDecryptor.shutdown();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    private double decryptions() {
+        return meterRegistry.get("encryption.field.decryptions").tag("type", CustomerAddress.class.getSimpleName()).counter().count();
+    }
+
+    private static List<EncryptedValue<CustomerAddress>> values(int size) {
+        List<EncryptedValue<CustomerAddress>> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte[] cipherText = EncryptedValue.of(new CustomerAddress().street("Street " + i)).getCipherText();
+            values.add(EncryptedValue.ofCipherText(cipherText, CustomerAddress.class));
+        }
+        return values;
+    }
+
+    @Test
+    void decryptSmallBatch() {
+        List<EncryptedValue<CustomerAddress>> values = values(3);
+        values.add(null);
+        double before = decryptions();
+
+        assertThat(batchDecryptor.decryptAll(values)).isEqualTo(3);
+
+        assertThat(decryptions() - before).isEqualTo(3);
+        assertThat(values.get(2).get().getStreet()).isEqualTo("Street 2");
+    }
+
+    @Test
+    void decryptLargeBatch() {
+        List<EncryptedValue<CustomerAddress>> values = values(100);
+        double before = decryptions();
+
+        assertThat(batchDecryptor.decryptAll(values)).isEqualTo(100);
+
+        assertThat(decryptions() - before).isEqualTo(100);
+        for (int i = 0; i < values.size(); i++) {
+            assertThat(values.get(i).get().getStreet()).isEqualTo("Street " + i);
+        }
+    }
+
+    @Test
+    void undecryptableValuesDontStopTheBatch() {
+        List<EncryptedValue<CustomerAddress>> values = values(10);
+        values.add(5, EncryptedValue.ofCipherText(EncryptionUtils.getRandomNonce(40), CustomerAddress.class));
+
+        batchDecryptor.decryptAll(values);
+
+        assertThat(values.get(5).get()).isNull();
+        assertThat(values.get(10).get().getStreet()).isEqualTo("Street 9");
+    }
+
+    @Test
+    void decryptedValuesAreSkipped() {
+        List<EncryptedValue<CustomerAddress>> values = values(4);
+        values.get(1).get();
+        double before = decryptions();
+
+        assertThat(batchDecryptor.decryptAll(values)).isEqualTo(3);
+
+        assertThat(decryptions() - before).isEqualTo(3);
+    }
+}
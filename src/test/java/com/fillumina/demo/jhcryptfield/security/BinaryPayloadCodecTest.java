@@ -0,0 +1,65 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link BinaryPayloadCodec}.
+ */
+class BinaryPayloadCodecTest {
+
+    private final BinaryPayloadCodec codec = new BinaryPayloadCodec();
+
+    private static CustomerAddress address() {
+        return new CustomerAddress().id(1L).street("Via della Conciliazione 1").city(null).postcode("00193").country("IT");
+    }
+
+    @Test
+    void encodeAndDecode() {
+        byte[] payload = codec.encode(address());
+
+        assertThat(payload[0]).isEqualTo(BinaryPayloadCodec.FORMAT_BINARY);
+        CustomerAddress decoded = codec.decode(payload, CustomerAddress.class);
+        assertThat(decoded.getId()).isNull();
+        assertThat(decoded.getStreet()).isEqualTo("Via della Conciliazione 1");
+        assertThat(decoded.getCity()).isNull();
+        assertThat(decoded.getPostcode()).isEqualTo("00193");
+        assertThat(decoded.getCountry()).isEqualTo("IT");
+    }
+
+    @Test
+    void smallerThanJson() {
+        assertThat(codec.encode(address()).length).isLessThan(new JsonPayloadCodec().encode(address()).length / 2);
+    }
+
+    @Test
+    void encryptedAddressesUseBinaryFormat() {
+        byte[] plainText = EncryptionHelper.forType(CustomerAddress.class).toPlainText(address());
+
+        assertThat(plainText[0]).isEqualTo(BinaryPayloadCodec.FORMAT_BINARY);
+    }
+
+    @Test
+    void decodeJson() {
+        byte[] json = "{\"street\":\"Via Roma\",\"city\":\"Roma\",\"postcode\":\"00100\",\"country\":\"IT\"}".getBytes(UTF_8);
+
+        CustomerAddress decoded = codec.decode(json, CustomerAddress.class);
+
+        assertThat(decoded.getStreet()).isEqualTo("Via Roma");
+        assertThat(decoded.getCountry()).isEqualTo("IT");
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        byte[] payload = codec.encode(address());
+        byte[] truncated = Arrays.copyOf(payload, payload.length - 2);
+
+        assertThatThrownBy(() -> codec.decode(truncated, CustomerAddress.class)).isInstanceOf(EncryptionException.class);
+    }
+}
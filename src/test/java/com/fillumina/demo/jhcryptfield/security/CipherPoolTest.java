@@ -0,0 +1,58 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link CipherPool}.
+ */
+class CipherPoolTest {
+
+    private static final SecretKey KEY = EncryptionUtils.getAESKeyFromPassword(
+        "password".toCharArray(),
+        "salt".getBytes(StandardCharsets.UTF_8)
+    );
+
+    @Test
+    void releasedCipherIsReused() {
+        CipherPool pool = new CipherPool(EncryptionUtils.ENCRYPT_ALGO, 2);
+        Cipher cipher = pool.borrow(Cipher.ENCRYPT_MODE, KEY, spec(1));
+        pool.release(cipher);
+        assertThat(pool.borrow(Cipher.DECRYPT_MODE, KEY, spec(1))).isSameAs(cipher);
+    }
+
+    @Test
+    void borrowNeverBlocksWhenEmpty() {
+        CipherPool pool = new CipherPool(EncryptionUtils.ENCRYPT_ALGO, 1);
+        Cipher first = pool.borrow(Cipher.ENCRYPT_MODE, KEY, spec(1));
+        Cipher second = pool.borrow(Cipher.ENCRYPT_MODE, KEY, spec(2));
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    void encryptionRoundTripWithPooledCiphers() {
+        byte[] iv = EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE);
+        for (int i = 0; i < 3; i++) {
+            byte[] cipherText = EncryptionUtils.encryptWithPrefixIV("text".getBytes(StandardCharsets.UTF_8), KEY, iv);
+            assertThat(EncryptionUtils.decryptWithPrefixIV(cipherText, KEY)).isEqualTo("text");
+            iv = EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE);
+        }
+    }
+
+    @Test
+    void invalidSize() {
+        assertThatThrownBy(() -> new CipherPool(EncryptionUtils.ENCRYPT_ALGO, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static GCMParameterSpec spec(int counter) {
+        byte[] iv = new byte[EncryptionUtils.IV_LENGTH_BYTE];
+        iv[0] = (byte) counter;
+        return new GCMParameterSpec(EncryptionUtils.TAG_LENGTH_BIT, iv);
+    }
+}
@@ -0,0 +1,144 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Test class for the {@link DecryptedValueCache}.
+ */
+class DecryptedValueCacheTest {
+
+    /**
+     * Counts the decryptions, the "cipher text" is the plain text itself.
+     */
+    private static class CountingEngine implements CipherEngine {
+
+        private final AtomicInteger decryptions = new AtomicInteger();
+
+        @Override
+        public byte[] encrypt(byte[] plainText, int offset, int length) {
+            return Arrays.copyOfRange(plainText, offset, offset + length);
+        }
+
+        @Override
+        public void decrypt(byte[] cipherText, PlainTextBuffer out) {
+            decryptions.incrementAndGet();
+            System.arraycopy(cipherText, 0, out.ensureCapacity(cipherText.length), 0, cipherText.length);
+            out.setSize(cipherText.length);
+        }
+    }
+
+    private final CountingEngine engine = new CountingEngine();
+
+    private DecryptedValueCache cache;
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    private static DecryptedValueCache create(boolean enabled, int maxEntries, boolean encrypted) {
+        ApplicationProperties.DecryptedCache config = new ApplicationProperties.DecryptedCache();
+        config.setEnabled(enabled);
+        config.setMaxEntries(maxEntries);
+        config.setEncrypted(encrypted);
+        return new DecryptedValueCache(config);
+    }
+
+    private String decrypt(Class<?> type, String cipherText) {
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            cache.decrypt(type, cipherText.getBytes(UTF_8), engine, buffer);
+            return new String(buffer.array(), 0, buffer.size(), UTF_8);
+        }
+    }
+
+    @Test
+    void disabledAlwaysDecrypts() {
+        cache = create(false, 10, false);
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(decrypt(CustomerAddress.class, "value")).isEqualTo("value");
+        assertThat(decrypt(CustomerAddress.class, "value")).isEqualTo("value");
+        assertThat(engine.decryptions).hasValue(2);
+    }
+
+    @Test
+    void decryptsOnce() {
+        cache = create(true, 10, false);
+        assertThat(decrypt(CustomerAddress.class, "value")).isEqualTo("value");
+        assertThat(decrypt(CustomerAddress.class, "value")).isEqualTo("value");
+        assertThat(engine.decryptions).hasValue(1);
+    }
+
+    @Test
+    void decryptsOnceEncrypted() {
+        cache = create(true, 10, true);
+        assertThat(decrypt(CustomerAddress.class, "value")).isEqualTo("value");
+        assertThat(decrypt(CustomerAddress.class, "value")).isEqualTo("value");
+        assertThat(decrypt(CustomerAddress.class, "")).isEmpty();
+        assertThat(decrypt(CustomerAddress.class, "")).isEmpty();
+        assertThat(engine.decryptions).hasValue(2);
+    }
+
+    @Test
+    void changedCipherTextMisses() {
+        cache = create(true, 10, false);
+        assertThat(decrypt(CustomerAddress.class, "old")).isEqualTo("old");
+        assertThat(decrypt(CustomerAddress.class, "new")).isEqualTo("new");
+        assertThat(engine.decryptions).hasValue(2);
+    }
+
+    @Test
+    void typesAreKeptApart() {
+        cache = create(true, 10, false);
+        decrypt(CustomerAddress.class, "value");
+        decrypt(String.class, "value");
+        assertThat(engine.decryptions).hasValue(2);
+    }
+
+    @Test
+    void entriesAreBounded() {
+        cache = create(true, 2, false);
+        for (int i = 0; i < 10; i++) {
+            decrypt(CustomerAddress.class, "value " + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThat(decrypt(CustomerAddress.class, "value " + i)).isEqualTo("value " + i);
+        }
+        // at most 2 of the second round are hits
+        assertThat(engine.decryptions.get()).isGreaterThanOrEqualTo(18);
+    }
+
+    @Test
+    void clearRemovesEntries() {
+        cache = create(true, 10, false);
+        decrypt(CustomerAddress.class, "value");
+        cache.clear();
+        decrypt(CustomerAddress.class, "value");
+        assertThat(engine.decryptions).hasValue(2);
+    }
+
+    @Test
+    void springInstallsTheConfiguredCache() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryption().getDecryptedCache().setEnabled(true);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(ApplicationProperties.class, () -> properties);
+            context.registerBean(DecryptedValueCache.class);
+            context.refresh();
+            DecryptedValueCache bean = context.getBean(DecryptedValueCache.class);
+            assertThat(bean.isEnabled()).isTrue();
+            assertThat(DecryptedValueCache.getInstance()).isSameAs(bean);
+        } finally {
+            // back to the disabled instance for the other tests
+            cache = new DecryptedValueCache(new ApplicationProperties());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.hibernate.usertype.DynamicParameterizedType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link EncryptedValue} holder.
+ */
+class EncryptedValueTest {
+
+    private static final String ADDRESS_COLUMN = "address_raw";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("password");
+        properties.getFieldEncryptionSecret().setSalt("salt");
+        new EncryptionKeyRegistry(properties, Runnable::run);
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    private double loads() {
+        return meterRegistry.get("encryption.field.loads").tag("type", CustomerAddress.class.getSimpleName()).counter().count();
+    }
+
+    private double decryptions() {
+        return meterRegistry.get("encryption.field.decryptions").tag("type", CustomerAddress.class.getSimpleName()).counter().count();
+    }
+
+    private double skipped() {
+        return meterRegistry.get("encryption.field.decryptions.skipped").tag("type", CustomerAddress.class.getSimpleName()).gauge().value();
+    }
+
+    // the type mapping Customer.address, as Hibernate configures it
+    private static EncryptedType addressType() {
+        Properties parameters = new Properties();
+        parameters.setProperty(DynamicParameterizedType.ENTITY, Customer.class.getName());
+        parameters.setProperty(DynamicParameterizedType.PROPERTY, "address");
+        EncryptedType type = new EncryptedType();
+        type.setParameterValues(parameters);
+        return type;
+    }
+
+    private static EncryptedValue<CustomerAddress> load(EncryptedType type, byte[] cipherText) throws Exception {
+        return load(type, cipherText, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EncryptedValue<CustomerAddress> load(EncryptedType type, byte[] cipherText, Customer owner) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes(ADDRESS_COLUMN)).thenReturn(cipherText);
+        return (EncryptedValue<CustomerAddress>) type.nullSafeGet(rs, new String[] { ADDRESS_COLUMN }, null, owner);
+    }
+
+    private static CustomerAddress address(String street) {
+        return new CustomerAddress().street(street).city("Rome").postcode("00100").country("Italy");
+    }
+
+    @Test
+    void decryptStoredValue() {
+        byte[] cipherText = EncryptedValue.of(address("Via Roma")).getCipherText();
+
+        CustomerAddress decrypted = EncryptedValue.ofCipherText(cipherText, CustomerAddress.class).get();
+
+        assertThat(decrypted.getStreet()).isEqualTo("Via Roma");
+        assertThat(decrypted.getCity()).isEqualTo("Rome");
+    }
+
+    @Test
+    void unchangedValueKeepsTheStoredCipherText() {
+        byte[] cipherText = EncryptedValue.of(address("Via Roma")).getCipherText();
+        EncryptedValue<CustomerAddress> stored = EncryptedValue.ofCipherText(cipherText, CustomerAddress.class);
+        EncryptedValue<CustomerAddress> current = EncryptedValue.of(address("Via Roma"));
+
+        assertThat(current.hasSameContent(stored)).isTrue();
+        assertThat(current.getCipherText()).isSameAs(cipherText);
+    }
+
+    @Test
+    void changedValueIsEncryptedAgain() {
+        byte[] cipherText = EncryptedValue.of(address("Via Roma")).getCipherText();
+        EncryptedValue<CustomerAddress> stored = EncryptedValue.ofCipherText(cipherText, CustomerAddress.class);
+        EncryptedValue<CustomerAddress> current = EncryptedValue.of(address("Via Milano"));
+
+        assertThat(current.hasSameContent(stored)).isFalse();
+        assertThat(current.getCipherText()).isNotEqualTo(cipherText);
+        assertThat(EncryptedValue.ofCipherText(current.getCipherText(), CustomerAddress.class).get().getStreet()).isEqualTo("Via Milano");
+    }
+
+    @Test
+    void undecryptableValueIsNull() {
+        EncryptedValue<CustomerAddress> value = EncryptedValue.ofCipherText(new byte[] { 1, 2, 3 }, CustomerAddress.class);
+
+        assertThat(value.get()).isNull();
+    }
+
+    @Test
+    void sameTypeWithDifferentEngines() {
+        EncryptionHelper<String> deterministic = EncryptionHelper.of(String.class, BinaryPayloadCodec.class, DeterministicCipherEngine.class);
+        EncryptionHelper<String> randomized = EncryptionHelper.forType(String.class);
+
+        EncryptedValue<String> first = EncryptedValue.of("mail@example.com", deterministic);
+        EncryptedValue<String> second = EncryptedValue.of("mail@example.com", deterministic);
+        EncryptedValue<String> other = EncryptedValue.of("mail@example.com", randomized);
+
+        assertThat(first.getCipherText()).isEqualTo(second.getCipherText());
+        assertThat(other.getCipherText()).isNotEqualTo(first.getCipherText());
+        assertThat(EncryptedValue.ofCipherText(first.getCipherText(), deterministic).get()).isEqualTo("mail@example.com");
+        assertThat(EncryptedValue.ofCipherText(other.getCipherText(), randomized).get()).isEqualTo("mail@example.com");
+        // never mixed
+        assertThat(other.hasSameContent(first)).isFalse();
+        assertThat(EncryptionHelper.of(String.class, BinaryPayloadCodec.class, DeterministicCipherEngine.class)).isSameAs(deterministic);
+    }
+
+    @Test
+    void loadedValuesAreNotDecrypted() throws Exception {
+        EncryptedType type = addressType();
+        byte[] cipherText = EncryptedValue.of(address("Via Roma")).getCipherText();
+        double loadsBefore = loads();
+        double decryptionsBefore = decryptions();
+
+        // rows read by findAll or existsById and entities hydrated from the second level cache
+        List<Object> loaded = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            loaded.add(load(type, cipherText));
+        }
+        loaded.add(type.assemble(cipherText, null));
+        loaded.add(type.deepCopy(loaded.get(0)));
+
+        assertThat(loads() - loadsBefore).isEqualTo(11);
+        assertThat(decryptions() - decryptionsBefore).isZero();
+        // the cipher text is written back without decrypting
+        assertThat(type.disassemble(loaded.get(0))).isSameAs(cipherText);
+        assertThat(decryptions() - decryptionsBefore).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadedValueTakesTheOwnerId() throws Exception {
+        EncryptedType type = addressType();
+        byte[] cipherText = EncryptedValue.of(address("Via Roma")).getCipherText();
+        Customer owner = new Customer().id(7L);
+
+        // read from the result set or from the second level cache
+        assertThat(load(type, cipherText, owner).get().getId()).isEqualTo(7L);
+        assertThat(((EncryptedValue<CustomerAddress>) type.assemble(cipherText, owner)).get().getId()).isEqualTo(7L);
+        // projections have no owner
+        assertThat(load(type, cipherText).get().getId()).isNull();
+
+        // the getter returns the decrypted address as it is
+        owner.setAddressRawBytes(cipherText);
+        CustomerAddress address = owner.getAddress();
+        assertThat(address.getId()).isEqualTo(7L);
+        assertThat(owner.getAddress()).isSameAs(address);
+    }
+
+    @Test
+    void metersCountLoadsAndDecryptions() throws Exception {
+        EncryptedType type = addressType();
+        byte[] cipherText = EncryptedValue.of(address("Via Roma")).getCipherText();
+        // the gauge is clamped at zero, values decrypted without being loaded are counted by other tests
+        for (int i = (int) Math.max(0, decryptions() - loads()); i >= 0; i--) {
+            load(type, cipherText);
+        }
+        double loadsBefore = loads();
+        double decryptionsBefore = decryptions();
+        double skippedBefore = skipped();
+
+        EncryptedValue<CustomerAddress> value = load(type, cipherText);
+
+        assertThat(loads() - loadsBefore).isEqualTo(1);
+        assertThat(decryptions() - decryptionsBefore).isZero();
+        assertThat(skipped() - skippedBefore).isEqualTo(1);
+
+        assertThat(value.get().getStreet()).isEqualTo("Via Roma");
+        assertThat(value.get().getStreet()).isEqualTo("Via Roma");
+
+        assertThat(loads() - loadsBefore).isEqualTo(1);
+        assertThat(decryptions() - decryptionsBefore).isEqualTo(1);
+        assertThat(skipped() - skippedBefore).isZero();
+    }
+
+    @Test
+    void concurrentFirstAccessDecryptsOnce() throws Exception {
+        EncryptedValue<CustomerAddress> value = load(addressType(), EncryptedValue.of(address("Via Roma")).getCipherText());
+        double decryptionsBefore = decryptions();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CustomerAddress>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(
+                    executor.submit(() -> {
+                        start.await();
+                        return value.get();
+                    })
+                );
+            }
+            start.countDown();
+            CustomerAddress first = results.get(0).get();
+            assertThat(first.getStreet()).isEqualTo("Via Roma");
+            for (Future<CustomerAddress> result : results) {
+                assertThat(result.get()).isSameAs(first);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(decryptions() - decryptionsBefore).isEqualTo(1);
+    }
+}
@@ -0,0 +1,73 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties.FieldEncryptionSecret;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link EncryptionHelper} key ring.
+ */
+class EncryptionHelperTest {
+
+    private EncryptionKeyRegistry keyRegistry;
+
+    private final EncryptionHelper<CustomerAddress> helper = new EncryptionHelper<>(CustomerAddress.class);
+
+    @BeforeEach
+    void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("legacy");
+        properties.getFieldEncryptionSecret().setSalt("legacysalt");
+        FieldEncryptionSecret secret = new FieldEncryptionSecret();
+        secret.setPassword("rotated");
+        secret.setSalt("rotatedsalt");
+        properties.getFieldEncryption().getKeys().put(1, secret);
+        properties.getFieldEncryption().setActiveKey(1);
+        keyRegistry = new EncryptionKeyRegistry(properties, Runnable::run);
+    }
+
+    @Test
+    void encryptWithActiveKey() {
+        byte[] cipherText = helper.encrypt("text");
+        assertThat(CipherTextHeader.keyIdOf(cipherText)).isEqualTo(1);
+        assertThat(helper.decrypt(cipherText)).isEqualTo("text");
+    }
+
+    @Test
+    void decryptLegacyValues() {
+        byte[] legacy = EncryptionUtils.encryptWithPrefixIV(
+            "text".getBytes(StandardCharsets.UTF_8),
+            keyRegistry.getKey(EncryptionKeyRegistry.LEGACY_KEY_ID),
+            EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE)
+        );
+        assertThat(helper.decrypt(legacy)).isEqualTo("text");
+    }
+
+    @Test
+    void reEncryptWithActiveKey() {
+        byte[] legacy = EncryptionUtils.encryptWithPrefixIV(
+            "text".getBytes(StandardCharsets.UTF_8),
+            keyRegistry.getKey(EncryptionKeyRegistry.LEGACY_KEY_ID),
+            EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE)
+        );
+        KeyRingCipherEngine engine = new KeyRingCipherEngine();
+        byte[] reEncrypted = engine.reEncrypt(legacy);
+        assertThat(CipherTextHeader.keyIdOf(reEncrypted)).isEqualTo(1);
+        assertThat(helper.decrypt(reEncrypted)).isEqualTo("text");
+        assertThat(engine.reEncrypt(reEncrypted)).isNull();
+    }
+
+    @Test
+    void tamperedHeaderIsRejected() {
+        byte[] cipherText = helper.encrypt("text");
+        cipherText[2] = 0;
+        assertThatThrownBy(() -> helper.decrypt(cipherText)).isInstanceOf(EncryptionException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fillumina.demo.jhcryptfield.security.EncryptionUtils.EncryptionException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.crypto.SecretKey;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link ByteBuffer} API of {@link EncryptionUtils}.
+ */
+class EncryptionUtilsTest {
+
+    private static final byte[] PLAIN_TEXT = "Via della Conciliazione 1".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] HEADER = CipherTextHeader.create(1);
+
+    private final SecretKey key = EncryptionUtils.getAESKeyFromPassword("password".toCharArray(), "salt".getBytes(StandardCharsets.UTF_8));
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private void encryptAndDecrypt(ByteBuffer plainText, ByteBuffer cipherText, ByteBuffer out) {
+        plainText.put(PLAIN_TEXT).flip();
+        int start = cipherText.position();
+        byte[] iv = EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE);
+
+        int length = EncryptionUtils.encryptWithHeader(plainText, key, HEADER, iv, cipherText);
+
+        assertThat(length).isEqualTo(EncryptionUtils.cipherTextLength(PLAIN_TEXT.length, HEADER.length));
+        assertThat(cipherText.position()).isEqualTo(start + length);
+        assertThat(plainText.hasRemaining()).isFalse();
+
+        cipherText.flip().position(start);
+        assertThat(EncryptionUtils.decryptWithHeader(remaining(cipherText), HEADER.length, key)).isEqualTo(PLAIN_TEXT);
+
+        int plainTextLength = EncryptionUtils.decryptWithHeader(cipherText, HEADER.length, key, out);
+
+        assertThat(plainTextLength).isEqualTo(EncryptionUtils.plainTextLength(length, HEADER.length)).isEqualTo(PLAIN_TEXT.length);
+        out.flip();
+        assertThat(remaining(out)).isEqualTo(PLAIN_TEXT);
+    }
+
+    @Test
+    void heapBuffers() {
+        ByteBuffer cipherText = ByteBuffer.allocate(128);
+        cipherText.position(5);
+        encryptAndDecrypt(ByteBuffer.allocate(64), cipherText, ByteBuffer.allocate(64));
+    }
+
+    @Test
+    void directBuffers() {
+        ByteBuffer cipherText = ByteBuffer.allocateDirect(128);
+        cipherText.position(5);
+        encryptAndDecrypt(ByteBuffer.allocateDirect(64), cipherText, ByteBuffer.allocateDirect(64));
+    }
+
+    @Test
+    void decryptPrefixIV() {
+        byte[] cipherText = EncryptionUtils.encryptWithPrefixIV(
+            PLAIN_TEXT,
+            key,
+            EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE)
+        );
+        ByteBuffer out = ByteBuffer.allocate(64);
+
+        EncryptionUtils.decryptWithHeader(ByteBuffer.wrap(cipherText), 0, key, out);
+
+        out.flip();
+        assertThat(remaining(out)).isEqualTo(PLAIN_TEXT);
+    }
+
+    @Test
+    void tamperedHeader() {
+        ByteBuffer cipherText = ByteBuffer.allocate(128);
+        EncryptionUtils.encryptWithHeader(
+            ByteBuffer.wrap(PLAIN_TEXT),
+            key,
+            HEADER,
+            EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE),
+            cipherText
+        );
+        cipherText.flip();
+        cipherText.put(2, (byte) 2);
+
+        assertThatThrownBy(() -> EncryptionUtils.decryptWithHeader(cipherText, HEADER.length, key, ByteBuffer.allocate(64)))
+            .isInstanceOf(EncryptionException.class);
+    }
+
+    @Test
+    void outputBufferTooSmall() {
+        ByteBuffer out = ByteBuffer.allocate(PLAIN_TEXT.length);
+        byte[] iv = EncryptionUtils.getRandomNonce(EncryptionUtils.IV_LENGTH_BYTE);
+
+        assertThatThrownBy(() -> EncryptionUtils.encryptWithHeader(ByteBuffer.wrap(PLAIN_TEXT), key, HEADER, iv, out))
+            .isInstanceOf(EncryptionException.class);
+        assertThat(out.position()).isZero();
+    }
+}
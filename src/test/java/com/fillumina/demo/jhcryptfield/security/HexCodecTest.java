@@ -0,0 +1,64 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link HexCodec} utility class.
+ */
+class HexCodecTest {
+
+    private static final byte[] ALL_BYTES = new byte[256];
+
+    static {
+        for (int i = 0; i < ALL_BYTES.length; i++) {
+            ALL_BYTES[i] = (byte) i;
+        }
+    }
+
+    @Test
+    void encodeAsLowercase() {
+        StringBuilder expected = new StringBuilder();
+        for (byte b : ALL_BYTES) {
+            expected.append(String.format("%02x", b));
+        }
+        assertThat(HexCodec.encode(ALL_BYTES)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void decodeAnyCase() {
+        String hex = HexCodec.encode(ALL_BYTES);
+        assertThat(HexCodec.decode(hex)).isEqualTo(ALL_BYTES);
+        assertThat(HexCodec.decode(hex.toUpperCase())).isEqualTo(ALL_BYTES);
+    }
+
+    @Test
+    void encodeIntoArray() {
+        char[] dest = "[....]".toCharArray();
+        HexCodec.encode(new byte[] { 0x0a, (byte) 0xf1, 0x00 }, 0, 2, dest, 1);
+        assertThat(new String(dest)).isEqualTo("[0af1]");
+    }
+
+    @Test
+    void decodeSlice() {
+        StringBuilder sb = new StringBuilder("iv:0af1;");
+        assertThat(HexCodec.decode(sb, 3, 7)).containsExactly(0x0a, 0xf1);
+
+        byte[] dest = new byte[4];
+        HexCodec.decode(sb, 3, 7, dest, 1);
+        assertThat(dest).containsExactly(0x00, 0x0a, 0xf1, 0x00);
+    }
+
+    @Test
+    void rejectOddLength() {
+        assertThatThrownBy(() -> HexCodec.decode("abc")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectInvalidCharacters() {
+        assertThatThrownBy(() -> HexCodec.decode("0g")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HexCodec.decode("0à")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
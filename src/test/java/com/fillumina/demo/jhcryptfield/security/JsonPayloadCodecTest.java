@@ -0,0 +1,41 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link JsonPayloadCodec} and the {@link GeneratedCodec}s.
+ */
+class JsonPayloadCodecTest {
+
+    private final JsonPayloadCodec codec = new JsonPayloadCodec();
+
+    @Test
+    void codecIsGeneratedForEncryptedValueTypes() {
+        assertThat(JsonPayloadCodec.<CustomerAddress>getGeneratedCodec(CustomerAddress.class)).isNotNull();
+    }
+
+    @Test
+    void encodeWithoutId() {
+        CustomerAddress address = new CustomerAddress().id(1L).street("Via \"Roma\"").city(null).postcode("00100").country("IT");
+
+        String json = new String(codec.encode(address), UTF_8);
+
+        assertThat(json).isEqualTo("{\"street\":\"Via \\\"Roma\\\"\",\"city\":null,\"postcode\":\"00100\",\"country\":\"IT\"}");
+    }
+
+    @Test
+    void decodeUnknownFieldsAndNulls() {
+        byte[] json = "{\"id\":7,\"country\":\"IT\",\"extra\":{\"a\":[1,2]},\"city\":null,\"street\":\"Via Roma\"}".getBytes(UTF_8);
+
+        CustomerAddress address = codec.decode(json, CustomerAddress.class);
+
+        assertThat(address.getId()).isNull();
+        assertThat(address.getStreet()).isEqualTo("Via Roma");
+        assertThat(address.getCity()).isNull();
+        assertThat(address.getCountry()).isEqualTo("IT");
+    }
+}
@@ -0,0 +1,64 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link NonceGenerator}.
+ */
+class NonceGeneratorTest {
+
+    @Test
+    void noncesAreUnique() {
+        NonceGenerator generator = new NonceGenerator("unique");
+        Set<ByteBuffer> nonces = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] nonce = generator.next();
+            assertThat(nonce).hasSize(EncryptionUtils.IV_LENGTH_BYTE);
+            assertThat(nonces.add(ByteBuffer.wrap(nonce))).isTrue();
+        }
+        assertThat(generator.getIssued()).isEqualTo(1000);
+    }
+
+    @Test
+    void noncesAreNotSequential() {
+        NonceGenerator generator = new NonceGenerator("random");
+        ByteBuffer first = ByteBuffer.wrap(generator.next());
+        ByteBuffer second = ByteBuffer.wrap(generator.next());
+        assertThat(second.getLong(4)).isNotEqualTo(first.getLong(4) + 1);
+    }
+
+    @Test
+    void limitIsOnlyCounted() {
+        NonceGenerator generator = new NonceGenerator("limit", NonceGenerator.GCM_MESSAGE_LIMIT - 1);
+        generator.next();
+        assertThat(generator.next()).hasSize(EncryptionUtils.IV_LENGTH_BYTE);
+        assertThat(generator.getIssued()).isEqualTo(NonceGenerator.GCM_MESSAGE_LIMIT + 1);
+    }
+
+    @Test
+    void generatorIsSharedPerKey() {
+        assertThat(NonceGenerator.forKey("shared")).isSameAs(NonceGenerator.forKey("shared"));
+        assertThat(NonceGenerator.forKey("shared")).isNotSameAs(NonceGenerator.forKey("other"));
+    }
+
+    @Test
+    void issuedNoncesAreCounted() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            NonceGenerator generator = new NonceGenerator("metric");
+            generator.next();
+            generator.next();
+            assertThat(registry.get(NonceGenerator.METRIC_NAME).tag("key", "metric").functionCounter().count()).isEqualTo(2.0);
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
+}
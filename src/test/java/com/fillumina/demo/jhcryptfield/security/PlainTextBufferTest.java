@@ -0,0 +1,58 @@
+package com.fillumina.demo.jhcryptfield.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link PlainTextBuffer}.
+ */
+class PlainTextBufferTest {
+
+    @Test
+    void reusedByTheSameThread() {
+        PlainTextBuffer first;
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            first = buffer;
+        }
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            assertThat(buffer).isSameAs(first);
+            assertThat(buffer.size()).isZero();
+        }
+    }
+
+    @Test
+    void nestedAcquireGetsANewBuffer() {
+        try (PlainTextBuffer outer = PlainTextBuffer.acquire(); PlainTextBuffer inner = PlainTextBuffer.acquire()) {
+            assertThat(inner).isNotSameAs(outer);
+        }
+    }
+
+    @Test
+    void growsKeepingTheContent() {
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            byte[] bytes = new byte[1000];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) i;
+            }
+            buffer.write(7);
+            buffer.write(bytes, 0, bytes.length);
+
+            assertThat(buffer.size()).isEqualTo(1001);
+            assertThat(buffer.toByteArray()[0]).isEqualTo((byte) 7);
+            assertThat(buffer.toByteArray()).endsWith(bytes);
+        }
+    }
+
+    @Test
+    void wipedWhenClosed() {
+        byte[] array;
+        try (PlainTextBuffer buffer = PlainTextBuffer.acquire()) {
+            buffer.write(new byte[] { 1, 2, 3 }, 0, 3);
+            array = buffer.array();
+        }
+        assertThat(array[0]).isZero();
+        assertThat(array[1]).isZero();
+        assertThat(array[2]).isZero();
+    }
+}
@@ -0,0 +1,112 @@
+package com.fillumina.demo.jhcryptfield.service;
+
+import static com.fillumina.demo.jhcryptfield.security.CipherTextHeader.ALGORITHM_AES_SIV;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fillumina.demo.jhcryptfield.IntegrationTest;
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository.ContactRaw;
+import com.fillumina.demo.jhcryptfield.security.CipherTextHeader;
+import com.fillumina.demo.jhcryptfield.security.EncryptionKeyRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link CustomerAddressKeyRotationService}.
+ */
+@IntegrationTest
+class CustomerAddressKeyRotationServiceIT {
+
+    private static final int NEW_KEY_ID = 1;
+
+    @Autowired
+    private CustomerAddressKeyRotationService rotationService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Customer customer;
+
+    @BeforeEach
+    void initTest() {
+        customer =
+            customerRepository.saveAndFlush(
+                new Customer()
+                    .firstName("AAAAAAAAAA")
+                    .lastName("AAAAAAAAAA")
+                    .email("rotated@example.com")
+                    .telephone("+44 20 7946 0000")
+                    .address(new CustomerAddress().street("1 Main St").city("Saint Paul").postcode("ab1 2cd").country("gb"))
+            );
+        // makes a new key active, as after a change of the configuration
+        ApplicationProperties rotated = new ApplicationProperties();
+        rotated.getFieldEncryptionSecret().setPassword(applicationProperties.getFieldEncryptionSecret().getPassword());
+        rotated.getFieldEncryptionSecret().setSalt(applicationProperties.getFieldEncryptionSecret().getSalt());
+        ApplicationProperties.FieldEncryptionSecret newKey = new ApplicationProperties.FieldEncryptionSecret();
+        newKey.setPassword("rotatedsecret");
+        newKey.setSalt("rotatedsalt");
+        rotated.getFieldEncryption().getKeys().put(NEW_KEY_ID, newKey);
+        rotated.getFieldEncryption().setActiveKey(NEW_KEY_ID);
+        new EncryptionKeyRegistry(rotated, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new EncryptionKeyRegistry(applicationProperties, Runnable::run);
+        customerRepository.deleteById(customer.getId());
+    }
+
+    private ContactRaw findContactRaw() {
+        return customerRepository.findContactRawByIdGreaterThan(customer.getId() - 1, PageRequest.of(0, 1)).get(0);
+    }
+
+    @Test
+    void rotateAddresses() {
+        assertThat(rotationService.rotateAll()).isGreaterThanOrEqualTo(1);
+
+        Customer rotated = new TransactionTemplate(transactionManager).execute(status -> {
+            Customer c = customerRepository.findById(customer.getId()).orElseThrow();
+            // decrypted within the transaction
+            c.getAddress();
+            return c;
+        });
+        assertThat(CipherTextHeader.keyIdOf(rotated.getAddressRawBytes())).isEqualTo(NEW_KEY_ID);
+        assertThat(rotated.getAddress().getStreet()).isEqualTo("1 Main St");
+        // the blind indexes are kept
+        assertThat(customerRepository.findAllByAddressPostcode("AB12CD")).extracting(Customer::getId).contains(customer.getId());
+        // nothing left to rotate
+        assertThat(rotationService.rotateAll()).isZero();
+    }
+
+    @Test
+    void rotateContacts() {
+        // found with the old key
+        assertThat(customerRepository.findAllByEmail("rotated@example.com")).extracting(Customer::getId).containsExactly(customer.getId());
+        assertThat(customerRepository.findAllByTelephone("+44 20 7946 0000")).extracting(Customer::getId).containsExactly(customer.getId());
+
+        assertThat(rotationService.rotateAll()).isGreaterThanOrEqualTo(3);
+
+        ContactRaw contact = findContactRaw();
+        assertThat(CipherTextHeader.keyIdOf(contact.getEmail().getCipherText(), ALGORITHM_AES_SIV)).isEqualTo(NEW_KEY_ID);
+        assertThat(CipherTextHeader.keyIdOf(contact.getTelephone().getCipherText(), ALGORITHM_AES_SIV)).isEqualTo(NEW_KEY_ID);
+        assertThat(contact.getEmail().get()).isEqualTo("rotated@example.com");
+        // found with the new key
+        assertThat(customerRepository.findAllByEmail("rotated@example.com")).extracting(Customer::getId).containsExactly(customer.getId());
+        assertThat(customerRepository.findAllByTelephone("+44 20 7946 0000")).extracting(Customer::getId).containsExactly(customer.getId());
+        assertThat(rotationService.rotateAll()).isZero();
+    }
+}
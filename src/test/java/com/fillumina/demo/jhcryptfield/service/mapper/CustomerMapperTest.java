@@ -0,0 +1,82 @@
+package com.fillumina.demo.jhcryptfield.service.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import com.fillumina.demo.jhcryptfield.config.ApplicationProperties;
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.security.EncryptionKeyRegistry;
+import com.fillumina.demo.jhcryptfield.service.dto.CustomerDTO;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link CustomerMapper}.
+ */
+class CustomerMapperTest {
+
+    private CustomerMapper customerMapper;
+    private Customer customer;
+
+    @BeforeEach
+    public void init() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFieldEncryptionSecret().setPassword("password");
+        properties.getFieldEncryptionSecret().setSalt("salt");
+        new EncryptionKeyRegistry(properties, Runnable::run);
+
+        customerMapper = new CustomerMapperImpl();
+        customer =
+            spy(
+                new Customer()
+                    .firstName("John")
+                    .lastName("Doe")
+                    .email("john.doe@example.com")
+                    .telephone("+39 06 1234567")
+                    .address(new CustomerAddress().street("Via Roma").city("Rome").postcode("00100").country("Italy"))
+            );
+        customer.setId(1L);
+    }
+
+    @Test
+    void unselectedEncryptedFieldsAreNotRead() {
+        CustomerDTO customerDTO = customerMapper.toDto(customer, Set.of(CustomerDTO.ID, CustomerDTO.FIRST_NAME));
+
+        assertThat(customerDTO.getId()).isEqualTo(1L);
+        assertThat(customerDTO.getFirstName()).isEqualTo("John");
+        assertThat(customerDTO.getLastName()).isNull();
+        assertThat(customerDTO.getEmail()).isNull();
+        assertThat(customerDTO.getTelephone()).isNull();
+        assertThat(customerDTO.getAddress()).isNull();
+        verify(customer, never()).getEmail();
+        verify(customer, never()).getTelephone();
+        verify(customer, never()).getAddress();
+    }
+
+    @Test
+    void selectedEncryptedFieldsAreMapped() {
+        CustomerDTO customerDTO = customerMapper.toDto(customer, Set.of(CustomerDTO.EMAIL, CustomerDTO.ADDRESS));
+
+        assertThat(customerDTO.getId()).isNull();
+        assertThat(customerDTO.getFirstName()).isNull();
+        assertThat(customerDTO.getEmail()).isEqualTo("john.doe@example.com");
+        assertThat(customerDTO.getTelephone()).isNull();
+        assertThat(customerDTO.getAddress().getStreet()).isEqualTo("Via Roma");
+        verify(customer, never()).getTelephone();
+    }
+
+    @Test
+    void allFieldsWithoutSelection() {
+        CustomerDTO customerDTO = customerMapper.toDto(customer, null);
+
+        assertThat(customerDTO.getId()).isEqualTo(1L);
+        assertThat(customerDTO.getLastName()).isEqualTo("Doe");
+        assertThat(customerDTO.getEmail()).isEqualTo("john.doe@example.com");
+        assertThat(customerDTO.getTelephone()).isEqualTo("+39 06 1234567");
+        assertThat(customerDTO.getAddress().getCity()).isEqualTo("Rome");
+    }
+}
@@ -0,0 +1,100 @@
+package com.fillumina.demo.jhcryptfield.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fillumina.demo.jhcryptfield.IntegrationTest;
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link CustomerAddressResource} REST controller
+ * with the second level cache enabled. Not transactional, so the customer
+ * is cached as it would be between requests.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+class CustomerAddressCacheIT {
+
+    private static final String ENTITY_API_URL_ID = "/api/customer-addresses/{id}";
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MockMvc restCustomerAddressMockMvc;
+
+    private Customer customer;
+
+    @BeforeEach
+    public void initTest() {
+        customer = customerRepository.saveAndFlush(CustomerResourceIT.createEntity(null));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        customerRepository.deleteById(customer.getId());
+    }
+
+    @Test
+    void putIdenticalCustomerAddress() throws Exception {
+        Long id = customer.getId();
+        byte[] addressRaw = customerRepository.findById(id).get().getAddressRawBytes();
+        assertThat(entityManagerFactory.getCache().contains(Customer.class, id)).isTrue();
+
+        CustomerAddress identicalAddress = CustomerAddressResourceIT.createEntity(null).id(id);
+        identicalAddress.setStreet(customer.getAddress().getStreet());
+
+        restCustomerAddressMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(identicalAddress))
+            )
+            .andExpect(status().isOk());
+
+        // neither rewritten nor evicted
+        assertThat(entityManagerFactory.getCache().contains(Customer.class, id)).isTrue();
+        assertThat(customerRepository.findAddressRawById(id).get().getAddressRaw().getCipherText()).isEqualTo(addressRaw);
+        // loaded from the cache with the id of the customer
+        assertThat(customerRepository.findById(id).get().getAddress().getId()).isEqualTo(id);
+    }
+
+    @Test
+    void putChangedCustomerAddress() throws Exception {
+        Long id = customer.getId();
+        byte[] addressRaw = customerRepository.findById(id).get().getAddressRawBytes();
+        assertThat(entityManagerFactory.getCache().contains(Customer.class, id)).isTrue();
+
+        CustomerAddress changedAddress = CustomerAddressResourceIT.createEntity(null).id(id).street("BBBBBBBBBB");
+
+        restCustomerAddressMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(changedAddress))
+            )
+            .andExpect(status().isOk());
+
+        assertThat(entityManagerFactory.getCache().contains(Customer.class, id)).isFalse();
+        assertThat(customerRepository.findAddressRawById(id).get().getAddressRaw().getCipherText()).isNotEqualTo(addressRaw);
+        assertThat(customerRepository.findById(id).get().getAddress().getStreet()).isEqualTo("BBBBBBBBBB");
+    }
+}
@@ -0,0 +1,389 @@
+package com.fillumina.demo.jhcryptfield.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fillumina.demo.jhcryptfield.IntegrationTest;
+import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
+import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.jayway.jsonpath.JsonPath;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the {@link CustomerAddressResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class CustomerAddressResourceIT {
+
+    private static final String DEFAULT_STREET = "AAAAAAAAAA";
+    private static final String DEFAULT_CITY = "AAAAAAAAAA";
+    private static final String DEFAULT_POSTCODE = "AAAAAAAAAA";
+    private static final String DEFAULT_COUNTRY = "AA";
+
+    private static final String UPDATED_STREET = "BBBBBBBBBB";
+    private static final String UPDATED_CITY = "BBBBBBBBBB";
+    private static final String UPDATED_POSTCODE = "BBBBBBBBBB";
+    private static final String UPDATED_COUNTRY = "BB";
+
+    private static final String ENTITY_API_URL = "/api/customer-addresses";
+    private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restCustomerAddressMockMvc;
+
+    private Customer customer;
+
+    /**
+     * Create an entity for this test.
+     */
+    public static CustomerAddress createEntity(EntityManager em) {
+        return new CustomerAddress().street(DEFAULT_STREET).city(DEFAULT_CITY).postcode(DEFAULT_POSTCODE).country(DEFAULT_COUNTRY);
+    }
+
+    @BeforeEach
+    public void initTest() {
+        customer = CustomerResourceIT.createEntity(em).address(createEntity(em));
+    }
+
+    @Test
+    @Transactional
+    void getAllCustomerAddresses() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+
+        // Get all the customerAddressList, the street sort is ignored
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&sort=street,asc"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(customer.getId().intValue())))
+            .andExpect(jsonPath("$.[*].street").value(hasItem(DEFAULT_STREET)))
+            .andExpect(jsonPath("$.[*].city").value(hasItem(DEFAULT_CITY)))
+            .andExpect(jsonPath("$.[*].postcode").value(hasItem(DEFAULT_POSTCODE)))
+            .andExpect(jsonPath("$.[*].country").value(hasItem(DEFAULT_COUNTRY)));
+    }
+
+    @Test
+    @Transactional
+    void searchCustomerAddresses() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+        Customer other = customerRepository.saveAndFlush(
+            CustomerResourceIT.createEntity(em).address(createEntity(em).postcode(UPDATED_POSTCODE))
+        );
+
+        // only the matching rows are decrypted, case is ignored
+        MvcResult result = restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_search?postcode=" + DEFAULT_POSTCODE.toLowerCase() + "&country=" + DEFAULT_COUNTRY))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().exists("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(customer.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(other.getId().intValue()))))
+            .andExpect(jsonPath("$.[*].postcode").value(not(hasItem(UPDATED_POSTCODE))))
+            .andReturn();
+        int found = JsonPath.<List<?>>read(result.getResponse().getContentAsString(), "$").size();
+        assertThat(result.getResponse().getHeader(CustomerAddressResource.DECRYPTED_COUNT_HEADER)).isEqualTo(Integer.toString(found));
+
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_search?postcode=" + UPDATED_POSTCODE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(other.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(customer.getId().intValue()))));
+    }
+
+    @Test
+    @Transactional
+    void searchCustomerAddressesWithoutCriteria() throws Exception {
+        restCustomerAddressMockMvc.perform(get(ENTITY_API_URL + "/_search")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getCustomerAddressesByPostcodeRange() throws Exception {
+        // Initialize the database
+        Customer inRange = customerRepository.saveAndFlush(customer.address(createEntity(em).postcode("20150")));
+        Customer inNextPrefix = customerRepository.saveAndFlush(
+            CustomerResourceIT.createEntity(em).address(createEntity(em).postcode("20210"))
+        );
+        Customer outOfRange = customerRepository.saveAndFlush(
+            CustomerResourceIT.createEntity(em).address(createEntity(em).postcode("30100"))
+        );
+
+        MvcResult result = restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=20100&postcodeTo=20199"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(inRange.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(inNextPrefix.getId().intValue()))))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(outOfRange.getId().intValue()))))
+            .andReturn();
+        // only the bucket of the prefix 201 is decrypted
+        int found = JsonPath.<List<?>>read(result.getResponse().getContentAsString(), "$").size();
+        assertThat(result.getResponse().getHeader(CustomerAddressResource.DECRYPTED_COUNT_HEADER)).isEqualTo(Integer.toString(found));
+
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=20100&postcodeTo=20299"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(inRange.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(inNextPrefix.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(outOfRange.getId().intValue()))));
+    }
+
+    @Test
+    @Transactional
+    void getCustomerAddressesByPostcodeRangeByPages() throws Exception {
+        // Initialize the database
+        Customer first = customerRepository.saveAndFlush(customer.address(createEntity(em).postcode("20150")));
+        Customer outOfRange = customerRepository.saveAndFlush(
+            CustomerResourceIT.createEntity(em).address(createEntity(em).postcode("20199"))
+        );
+        Customer second = customerRepository.saveAndFlush(
+            CustomerResourceIT.createEntity(em).address(createEntity(em).postcode("20160"))
+        );
+
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=20100&postcodeTo=20170&size=1&afterId=" + (first.getId() - 1)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue())))
+            .andExpect(header().string(CustomerAddressResource.DECRYPTED_COUNT_HEADER, "1"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("afterId=" + first.getId() + ">; rel=\"next\"")));
+
+        // the candidate out of range is decrypted and skipped
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=20100&postcodeTo=20170&size=1&afterId=" + first.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(outOfRange.getId().intValue()))))
+            .andExpect(header().string(CustomerAddressResource.DECRYPTED_COUNT_HEADER, "2"));
+
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=20100&postcodeTo=20170&size=1&afterId=" + second.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))));
+    }
+
+    @Test
+    @Transactional
+    void getCustomerAddressesByInvalidPostcodeRange() throws Exception {
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=AB1&postcodeTo=CD1"))
+            .andExpect(status().isBadRequest());
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=20199&postcodeTo=20100"))
+            .andExpect(status().isBadRequest());
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_range?postcodeFrom=00000&postcodeTo=99999"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void streamAllCustomerAddresses() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL + "/_stream"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(customer.getId().intValue())))
+            .andExpect(jsonPath("$.[*].street").value(hasItem(DEFAULT_STREET)))
+            .andExpect(jsonPath("$.[*].country").value(hasItem(DEFAULT_COUNTRY)));
+    }
+
+    @Test
+    @Transactional
+    void getCustomerAddress() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+        em.clear();
+
+        // Get the customerAddress
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.id").value(customer.getId().intValue()))
+            .andExpect(jsonPath("$.street").value(DEFAULT_STREET))
+            .andExpect(jsonPath("$.city").value(DEFAULT_CITY))
+            .andExpect(jsonPath("$.postcode").value(DEFAULT_POSTCODE))
+            .andExpect(jsonPath("$.country").value(DEFAULT_COUNTRY));
+    }
+
+    @Test
+    @Transactional
+    void getCustomerAddressWithIfNoneMatch() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+        em.clear();
+
+        String eTag = restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    @Transactional
+    void getNonExistingCustomerAddress() throws Exception {
+        // Get the customerAddress
+        restCustomerAddressMockMvc.perform(get(ENTITY_API_URL_ID, Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void putExistingCustomerAddress() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+        em.clear();
+
+        CustomerAddress updatedCustomerAddress = new CustomerAddress()
+            .id(customer.getId())
+            .street(UPDATED_STREET)
+            .city(UPDATED_CITY)
+            .postcode(UPDATED_POSTCODE)
+            .country(UPDATED_COUNTRY);
+
+        restCustomerAddressMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, customer.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedCustomerAddress))
+            )
+            .andExpect(status().isOk());
+
+        // Validate the CustomerAddress in the database
+        CustomerAddress testCustomerAddress = customerRepository.findById(customer.getId()).get().getAddress();
+        assertThat(testCustomerAddress.getStreet()).isEqualTo(UPDATED_STREET);
+        assertThat(testCustomerAddress.getCity()).isEqualTo(UPDATED_CITY);
+        assertThat(testCustomerAddress.getPostcode()).isEqualTo(UPDATED_POSTCODE);
+        assertThat(testCustomerAddress.getCountry()).isEqualTo(UPDATED_COUNTRY);
+    }
+
+    @Test
+    @Transactional
+    void putCustomerAddressWithIfMatch() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+        em.clear();
+
+        String eTag = restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        CustomerAddress updatedCustomerAddress = createEntity(em).id(customer.getId()).street(UPDATED_STREET);
+
+        // a stale ETag is refused
+        restCustomerAddressMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, customer.getId())
+                    .header(HttpHeaders.IF_MATCH, "\"stale\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedCustomerAddress))
+            )
+            .andExpect(status().isPreconditionFailed());
+        assertThat(customerRepository.findById(customer.getId()).get().getAddress().getStreet()).isEqualTo(DEFAULT_STREET);
+        em.clear();
+
+        // the current one is accepted and replaced
+        String updatedETag = restCustomerAddressMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, customer.getId())
+                    .header(HttpHeaders.IF_MATCH, eTag)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedCustomerAddress))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        em.clear();
+        assertThat(customerRepository.findById(customer.getId()).get().getAddress().getStreet()).isEqualTo(UPDATED_STREET);
+
+        // the new ETag is the one of the stored address
+        restCustomerAddressMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()).header(HttpHeaders.IF_NONE_MATCH, updatedETag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void putNonExistingCustomerAddress() throws Exception {
+        CustomerAddress customerAddress = createEntity(em).id(Long.MAX_VALUE);
+
+        restCustomerAddressMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, Long.MAX_VALUE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(customerAddress))
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void partialUpdateCustomerAddressWithPatch() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+        em.clear();
+
+        CustomerAddress partialUpdatedCustomerAddress = new CustomerAddress().id(customer.getId()).city(UPDATED_CITY);
+
+        restCustomerAddressMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, customer.getId())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedCustomerAddress))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.street").value(DEFAULT_STREET))
+            .andExpect(jsonPath("$.city").value(UPDATED_CITY));
+
+        // Validate the CustomerAddress in the database
+        CustomerAddress testCustomerAddress = customerRepository.findById(customer.getId()).get().getAddress();
+        assertThat(testCustomerAddress.getStreet()).isEqualTo(DEFAULT_STREET);
+        assertThat(testCustomerAddress.getCity()).isEqualTo(UPDATED_CITY);
+        assertThat(testCustomerAddress.getPostcode()).isEqualTo(DEFAULT_POSTCODE);
+        assertThat(testCustomerAddress.getCountry()).isEqualTo(DEFAULT_COUNTRY);
+    }
+}
@@ -2,23 +2,35 @@ package com.fillumina.demo.jhcryptfield.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.fillumina.demo.jhcryptfield.IntegrationTest;
+import com.jayway.jsonpath.JsonPath;
 import com.fillumina.demo.jhcryptfield.domain.Customer;
+import com.fillumina.demo.jhcryptfield.domain.CustomerAddress;
 import com.fillumina.demo.jhcryptfield.repository.CustomerRepository;
+import com.fillumina.demo.jhcryptfield.service.dto.CustomerDTO;
+import com.fillumina.demo.jhcryptfield.service.mapper.CustomerMapper;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Base64Utils;
 
@@ -42,18 +54,23 @@ class CustomerResourceIT {
     private static final String DEFAULT_TELEPHONE = "AAAAAAAAAA";
     private static final String UPDATED_TELEPHONE = "BBBBBBBBBB";
 
-    private static final String DEFAULT_ADDRESS_RAW = "AAAAAAAAAA";
-    private static final String UPDATED_ADDRESS_RAW = "BBBBBBBBBB";
+    private static final String DEFAULT_STREET = "AAAAAAAAAA";
+    private static final String UPDATED_STREET = "BBBBBBBBBB";
 
     private static final String ENTITY_API_URL = "/api/customers";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
 
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]*)>; rel=\"next\"");
+
     private static Random random = new Random();
     private static AtomicLong count = new AtomicLong(random.nextInt() + (2 * Integer.MAX_VALUE));
 
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CustomerMapper customerMapper;
+
     @Autowired
     private EntityManager em;
 
@@ -74,10 +91,14 @@ class CustomerResourceIT {
             .lastName(DEFAULT_LAST_NAME)
             .email(DEFAULT_EMAIL)
             .telephone(DEFAULT_TELEPHONE)
-            .addressRaw(DEFAULT_ADDRESS_RAW);
+            .address(createAddress(DEFAULT_STREET));
         return customer;
     }
 
+    private static CustomerAddress createAddress(String street) {
+        return new CustomerAddress().street(street).city("AAAAAAAAAA").postcode("AAAAAAAAAA").country("AA");
+    }
+
     /**
      * Create an updated entity for this test.
      *
@@ -90,7 +111,7 @@ class CustomerResourceIT {
             .lastName(UPDATED_LAST_NAME)
             .email(UPDATED_EMAIL)
             .telephone(UPDATED_TELEPHONE)
-            .addressRaw(UPDATED_ADDRESS_RAW);
+            .address(createAddress(UPDATED_STREET));
         return customer;
     }
 
@@ -104,8 +125,9 @@ class CustomerResourceIT {
     void createCustomer() throws Exception {
         int databaseSizeBeforeCreate = customerRepository.findAll().size();
         // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
         restCustomerMockMvc
-            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customer)))
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customerDTO)))
             .andExpect(status().isCreated());
 
         // Validate the Customer in the database
@@ -116,7 +138,7 @@ class CustomerResourceIT {
         assertThat(testCustomer.getLastName()).isEqualTo(DEFAULT_LAST_NAME);
         assertThat(testCustomer.getEmail()).isEqualTo(DEFAULT_EMAIL);
         assertThat(testCustomer.getTelephone()).isEqualTo(DEFAULT_TELEPHONE);
-        assertThat(testCustomer.getAddressRaw()).isEqualTo(DEFAULT_ADDRESS_RAW);
+        assertThat(testCustomer.getAddress().getStreet()).isEqualTo(DEFAULT_STREET);
     }
 
     @Test
@@ -124,12 +146,13 @@ class CustomerResourceIT {
     void createCustomerWithExistingId() throws Exception {
         // Create the Customer with an existing ID
         customer.setId(1L);
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
 
         int databaseSizeBeforeCreate = customerRepository.findAll().size();
 
         // An entity with an existing ID cannot be created, so this API call must fail
         restCustomerMockMvc
-            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customer)))
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customerDTO)))
             .andExpect(status().isBadRequest());
 
         // Validate the Customer in the database
@@ -153,7 +176,90 @@ class CustomerResourceIT {
             .andExpect(jsonPath("$.[*].lastName").value(hasItem(DEFAULT_LAST_NAME)))
             .andExpect(jsonPath("$.[*].email").value(hasItem(DEFAULT_EMAIL)))
             .andExpect(jsonPath("$.[*].telephone").value(hasItem(DEFAULT_TELEPHONE)))
-            .andExpect(jsonPath("$.[*].addressRaw").value(hasItem(DEFAULT_ADDRESS_RAW.toString())));
+            .andExpect(jsonPath("$.[*].address.street").value(hasItem(DEFAULT_STREET)))
+            .andExpect(jsonPath("$.[*].addressRaw").doesNotExist());
+    }
+
+    @Test
+    @Transactional
+    void getAllCustomersWithFields() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+
+        // Get only the selected fields
+        restCustomerMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&fields=id,lastName"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(customer.getId().intValue())))
+            .andExpect(jsonPath("$.[*].lastName").value(hasItem(DEFAULT_LAST_NAME)))
+            .andExpect(jsonPath("$.[*].firstName").doesNotExist())
+            .andExpect(jsonPath("$.[*].address").doesNotExist());
+
+        restCustomerMockMvc.perform(get(ENTITY_API_URL + "?fields=id,addressRaw")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getCustomersByKeyset() throws Exception {
+        // Initialize the database
+        Customer first = customerRepository.save(createEntity(em).lastName("CCCCCCCCCC"));
+        Customer second = customerRepository.save(createEntity(em).lastName("BBBBBBBBBB"));
+        Customer third = customerRepository.save(createEntity(em).lastName("AAAAAAAAAA"));
+        customerRepository.flush();
+
+        // Walk all the pages sorted by last name
+        List<Integer> ids = walkKeysetPages(ENTITY_API_URL + "/_keyset?size=2&sort=lastName,desc&count=false", 2);
+
+        assertThat(ids)
+            .containsSubsequence(first.getId().intValue(), second.getId().intValue(), third.getId().intValue())
+            .doesNotHaveDuplicates()
+            .hasSize(customerRepository.findAll().size());
+    }
+
+    @Test
+    @Transactional
+    void getCustomersByKeysetWithNullValues() throws Exception {
+        // Initialize the database
+        Customer firstNull = customerRepository.save(createEntity(em).lastName(null));
+        Customer value = customerRepository.save(createEntity(em).lastName("AAAAAAAAAA"));
+        Customer secondNull = customerRepository.save(createEntity(em).lastName(null));
+        customerRepository.flush();
+        int total = customerRepository.findAll().size();
+
+        // nulls come first in ascending order, by id
+        List<Integer> ascending = walkKeysetPages(ENTITY_API_URL + "/_keyset?size=1&sort=lastName,asc&count=false", 1);
+        assertThat(ascending).doesNotHaveDuplicates().hasSize(total);
+        assertThat(ascending.subList(0, 2)).containsExactly(firstNull.getId().intValue(), secondNull.getId().intValue());
+        assertThat(ascending).contains(value.getId().intValue());
+
+        // and last in descending order
+        List<Integer> descending = walkKeysetPages(ENTITY_API_URL + "/_keyset?size=2&sort=lastName,desc&count=false", 2);
+        assertThat(descending).doesNotHaveDuplicates().hasSize(total);
+        assertThat(descending.subList(total - 2, total)).containsExactly(secondNull.getId().intValue(), firstNull.getId().intValue());
+    }
+
+    private List<Integer> walkKeysetPages(String firstPage, int size) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        URI uri = URI.create(firstPage);
+        while (uri != null) {
+            MvcResult result = restCustomerMockMvc
+                .perform(get(uri))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Total-Count"))
+                .andExpect(jsonPath("$.length()").value(lessThanOrEqualTo(size)))
+                .andReturn();
+            ids.addAll(JsonPath.read(result.getResponse().getContentAsString(), "$[*].id"));
+            Matcher next = NEXT_LINK.matcher(result.getResponse().getHeader(HttpHeaders.LINK));
+            uri = next.find() ? URI.create(next.group(1)) : null;
+        }
+        return ids;
+    }
+
+    @Test
+    @Transactional
+    void getCustomersByKeysetWithInvalidCursor() throws Exception {
+        restCustomerMockMvc.perform(get(ENTITY_API_URL + "/_keyset?cursor=invalid")).andExpect(status().isBadRequest());
+        restCustomerMockMvc.perform(get(ENTITY_API_URL + "/_keyset?sort=addressRaw,asc")).andExpect(status().isBadRequest());
     }
 
     @Test
@@ -172,7 +278,69 @@ class CustomerResourceIT {
             .andExpect(jsonPath("$.lastName").value(DEFAULT_LAST_NAME))
             .andExpect(jsonPath("$.email").value(DEFAULT_EMAIL))
             .andExpect(jsonPath("$.telephone").value(DEFAULT_TELEPHONE))
-            .andExpect(jsonPath("$.addressRaw").value(DEFAULT_ADDRESS_RAW.toString()));
+            .andExpect(jsonPath("$.address.street").value(DEFAULT_STREET))
+            .andExpect(jsonPath("$.addressRaw").doesNotExist());
+    }
+
+    @Test
+    @Transactional
+    void getCustomerWithIfNoneMatch() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+
+        String eTag = restCustomerMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        restCustomerMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    @Transactional
+    void putCustomerWithIfMatch() throws Exception {
+        // Initialize the database
+        customerRepository.saveAndFlush(customer);
+
+        String eTag = restCustomerMockMvc
+            .perform(get(ENTITY_API_URL_ID, customer.getId()))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        Customer updatedCustomer = customerRepository.findById(customer.getId()).get();
+        em.detach(updatedCustomer);
+        updatedCustomer.firstName(UPDATED_FIRST_NAME);
+        CustomerDTO customerDTO = customerMapper.toDto(updatedCustomer);
+
+        // a stale ETag is refused
+        restCustomerMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, customerDTO.getId())
+                    .header(HttpHeaders.IF_MATCH, "\"stale\"")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
+            )
+            .andExpect(status().isPreconditionFailed());
+        assertThat(customerRepository.findById(customer.getId()).get().getFirstName()).isEqualTo(DEFAULT_FIRST_NAME);
+
+        // the current one is accepted and replaced
+        restCustomerMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, customerDTO.getId())
+                    .header(HttpHeaders.IF_MATCH, eTag)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+        assertThat(customerRepository.findById(customer.getId()).get().getFirstName()).isEqualTo(UPDATED_FIRST_NAME);
     }
 
     @Test
@@ -199,13 +367,14 @@ class CustomerResourceIT {
             .lastName(UPDATED_LAST_NAME)
             .email(UPDATED_EMAIL)
             .telephone(UPDATED_TELEPHONE)
-            .addressRaw(UPDATED_ADDRESS_RAW);
+            .address(createAddress(UPDATED_STREET));
+        CustomerDTO customerDTO = customerMapper.toDto(updatedCustomer);
 
         restCustomerMockMvc
             .perform(
-                put(ENTITY_API_URL_ID, updatedCustomer.getId())
+                put(ENTITY_API_URL_ID, customerDTO.getId())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .content(TestUtil.convertObjectToJsonBytes(updatedCustomer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
             )
             .andExpect(status().isOk());
 
@@ -217,7 +386,7 @@ class CustomerResourceIT {
         assertThat(testCustomer.getLastName()).isEqualTo(UPDATED_LAST_NAME);
         assertThat(testCustomer.getEmail()).isEqualTo(UPDATED_EMAIL);
         assertThat(testCustomer.getTelephone()).isEqualTo(UPDATED_TELEPHONE);
-        assertThat(testCustomer.getAddressRaw()).isEqualTo(UPDATED_ADDRESS_RAW);
+        assertThat(testCustomer.getAddress().getStreet()).isEqualTo(UPDATED_STREET);
     }
 
     @Test
@@ -226,12 +395,15 @@ class CustomerResourceIT {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
         customer.setId(count.incrementAndGet());
 
+        // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
+
         // If the entity doesn't have an ID, it will throw BadRequestAlertException
         restCustomerMockMvc
             .perform(
-                put(ENTITY_API_URL_ID, customer.getId())
+                put(ENTITY_API_URL_ID, customerDTO.getId())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .content(TestUtil.convertObjectToJsonBytes(customer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -246,12 +418,15 @@ class CustomerResourceIT {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
         customer.setId(count.incrementAndGet());
 
+        // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restCustomerMockMvc
             .perform(
                 put(ENTITY_API_URL_ID, count.incrementAndGet())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .content(TestUtil.convertObjectToJsonBytes(customer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -266,9 +441,12 @@ class CustomerResourceIT {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
         customer.setId(count.incrementAndGet());
 
+        // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restCustomerMockMvc
-            .perform(put(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customer)))
+            .perform(put(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customerDTO)))
             .andExpect(status().isMethodNotAllowed());
 
         // Validate the Customer in the database
@@ -288,13 +466,13 @@ class CustomerResourceIT {
         Customer partialUpdatedCustomer = new Customer();
         partialUpdatedCustomer.setId(customer.getId());
 
-        partialUpdatedCustomer.firstName(UPDATED_FIRST_NAME).addressRaw(UPDATED_ADDRESS_RAW);
+        partialUpdatedCustomer.firstName(UPDATED_FIRST_NAME).address(createAddress(UPDATED_STREET));
 
         restCustomerMockMvc
             .perform(
                 patch(ENTITY_API_URL_ID, partialUpdatedCustomer.getId())
                     .contentType("application/merge-patch+json")
-                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedCustomer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerMapper.toDto(partialUpdatedCustomer)))
             )
             .andExpect(status().isOk());
 
@@ -306,7 +484,7 @@ class CustomerResourceIT {
         assertThat(testCustomer.getLastName()).isEqualTo(DEFAULT_LAST_NAME);
         assertThat(testCustomer.getEmail()).isEqualTo(DEFAULT_EMAIL);
         assertThat(testCustomer.getTelephone()).isEqualTo(DEFAULT_TELEPHONE);
-        assertThat(testCustomer.getAddressRaw()).isEqualTo(UPDATED_ADDRESS_RAW);
+        assertThat(testCustomer.getAddress().getStreet()).isEqualTo(UPDATED_STREET);
     }
 
     @Test
@@ -326,13 +504,13 @@ class CustomerResourceIT {
             .lastName(UPDATED_LAST_NAME)
             .email(UPDATED_EMAIL)
             .telephone(UPDATED_TELEPHONE)
-            .addressRaw(UPDATED_ADDRESS_RAW);
+            .address(createAddress(UPDATED_STREET));
 
         restCustomerMockMvc
             .perform(
                 patch(ENTITY_API_URL_ID, partialUpdatedCustomer.getId())
                     .contentType("application/merge-patch+json")
-                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedCustomer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerMapper.toDto(partialUpdatedCustomer)))
             )
             .andExpect(status().isOk());
 
@@ -344,7 +522,7 @@ class CustomerResourceIT {
         assertThat(testCustomer.getLastName()).isEqualTo(UPDATED_LAST_NAME);
         assertThat(testCustomer.getEmail()).isEqualTo(UPDATED_EMAIL);
         assertThat(testCustomer.getTelephone()).isEqualTo(UPDATED_TELEPHONE);
-        assertThat(testCustomer.getAddressRaw()).isEqualTo(UPDATED_ADDRESS_RAW);
+        assertThat(testCustomer.getAddress().getStreet()).isEqualTo(UPDATED_STREET);
     }
 
     @Test
@@ -353,12 +531,15 @@ class CustomerResourceIT {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
         customer.setId(count.incrementAndGet());
 
+        // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
+
         // If the entity doesn't have an ID, it will throw BadRequestAlertException
         restCustomerMockMvc
             .perform(
-                patch(ENTITY_API_URL_ID, customer.getId())
+                patch(ENTITY_API_URL_ID, customerDTO.getId())
                     .contentType("application/merge-patch+json")
-                    .content(TestUtil.convertObjectToJsonBytes(customer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -373,12 +554,15 @@ class CustomerResourceIT {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
         customer.setId(count.incrementAndGet());
 
+        // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restCustomerMockMvc
             .perform(
                 patch(ENTITY_API_URL_ID, count.incrementAndGet())
                     .contentType("application/merge-patch+json")
-                    .content(TestUtil.convertObjectToJsonBytes(customer))
+                    .content(TestUtil.convertObjectToJsonBytes(customerDTO))
             )
             .andExpect(status().isBadRequest());
 
@@ -393,9 +577,12 @@ class CustomerResourceIT {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
         customer.setId(count.incrementAndGet());
 
+        // Create the Customer
+        CustomerDTO customerDTO = customerMapper.toDto(customer);
+
         // If url ID doesn't match entity ID, it will throw BadRequestAlertException
         restCustomerMockMvc
-            .perform(patch(ENTITY_API_URL).contentType("application/merge-patch+json").content(TestUtil.convertObjectToJsonBytes(customer)))
+            .perform(patch(ENTITY_API_URL).contentType("application/merge-patch+json").content(TestUtil.convertObjectToJsonBytes(customerDTO)))
             .andExpect(status().isMethodNotAllowed());
 
         // Validate the Customer in the database
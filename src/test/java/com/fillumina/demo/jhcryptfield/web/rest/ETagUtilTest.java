@@ -0,0 +1,38 @@
+package com.fillumina.demo.jhcryptfield.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ETagUtil}.
+ */
+class ETagUtilTest {
+
+    @Test
+    void sameValuesHaveSameTag() {
+        assertThat(ETagUtil.of("a", new byte[] { 1, 2 }, null)).isEqualTo(ETagUtil.of("a", new byte[] { 1, 2 }, null));
+    }
+
+    @Test
+    void differentValuesHaveDifferentTags() {
+        assertThat(ETagUtil.of("ab", "c")).isNotEqualTo(ETagUtil.of("a", "bc"));
+        assertThat(ETagUtil.of("", null)).isNotEqualTo(ETagUtil.of(null, ""));
+        assertThat(ETagUtil.of(new byte[] { 1 })).isNotEqualTo(ETagUtil.of(new byte[] { 2 }));
+    }
+
+    @Test
+    void tagIsQuoted() {
+        assertThat(ETagUtil.of("a")).startsWith("\"").endsWith("\"").hasSize(24);
+    }
+
+    @Test
+    void matchesIsStrong() {
+        String eTag = ETagUtil.of("a");
+        assertThat(ETagUtil.matches(eTag, eTag)).isTrue();
+        assertThat(ETagUtil.matches("\"other\", " + eTag, eTag)).isTrue();
+        assertThat(ETagUtil.matches("*", eTag)).isTrue();
+        assertThat(ETagUtil.matches("W/" + eTag, eTag)).isFalse();
+        assertThat(ETagUtil.matches("\"other\"", eTag)).isFalse();
+    }
+}